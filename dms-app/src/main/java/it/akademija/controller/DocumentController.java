@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
@@ -20,6 +21,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
@@ -35,9 +37,14 @@ import it.akademija.model.document.DocumentForClient;
 import it.akademija.model.document.DocumentForStatistics;
 import it.akademija.model.document.DocumentForTable;
 import it.akademija.model.document.DocumentInfoAfterReview;
+import it.akademija.model.document.DocumentStatisticsBucket;
+import it.akademija.model.document.DocumentStatisticsForDocType;
 import it.akademija.model.document.NewDocument;
+import it.akademija.model.document.StatisticsBucket;
 import it.akademija.model.file.DBFile;
+import it.akademija.model.file.FileFingerprint;
 import it.akademija.model.file.UploadFileResponse;
+import it.akademija.model.page.PageForClient;
 import it.akademija.service.DocumentService;
 
 @RestController
@@ -90,8 +97,9 @@ public class DocumentController {
 	
 	@RequestMapping(path = "/page/{username}", method = RequestMethod.GET)
 	@ApiOperation(value = "Get documents by author", notes = "Returns list of documents by author")
-	public List<DocumentForTable> getPageableDocumentsForClientByAuthor(@PathVariable String username, @RequestParam int page, @RequestParam int size) {
-		return documentService.getPageableDocumentsForClientByAuthor(username, page, size);
+	public PageForClient<DocumentForTable> getPageableDocumentsForClientByAuthor(@PathVariable String username, @RequestParam(defaultValue = "0") int page, @RequestParam int size,
+			@RequestParam(required = false) Long afterId, @RequestParam(defaultValue = "true") boolean withTotal) {
+		return documentService.getPageableDocumentsForClientByAuthor(username, page, size, afterId, withTotal);
 	}
 	
 	@RequestMapping(path = "/containing/{username}/{titleText}", method = RequestMethod.GET)
@@ -102,8 +110,9 @@ public class DocumentController {
 	
 	@RequestMapping(path = "/page/containing/{username}/{titleText}", method = RequestMethod.GET)
 	@ApiOperation(value = "Get documents by author and titleText", notes = "Returns list of documents by author and title text")
-	public List<DocumentForTable> getPageableDocumentsForClientByAuthorContaining(@PathVariable String username, @PathVariable String titleText, @RequestParam int page, @RequestParam int size) {
-		return documentService.getPageableDocumentsForClientByAuthorContaining(username, titleText, page, size);
+	public PageForClient<DocumentForTable> getPageableDocumentsForClientByAuthorContaining(@PathVariable String username, @PathVariable String titleText, @RequestParam(defaultValue = "0") int page, @RequestParam int size,
+			@RequestParam(required = false) Long afterId, @RequestParam(defaultValue = "true") boolean withTotal) {
+		return documentService.getPageableDocumentsForClientByAuthorContaining(username, titleText, page, size, afterId, withTotal);
 	}
 
 	@RequestMapping(path = "/status/{status}/{username}", method = RequestMethod.GET)
@@ -115,9 +124,10 @@ public class DocumentController {
 	
 	@RequestMapping(path = "/page/status/{status}/{username}", method = RequestMethod.GET)
 	@ApiOperation(value = "Get documents by author and status", notes = "Returns list of documents by author and status (descending order)")
-	public List<DocumentForTable> getPageableDocumentsForClientByAuthorAndStatus(@PathVariable String username,
-			@PathVariable String status, @RequestParam int page, @RequestParam int size) {
-		return documentService.getPageableDocumentsForClientByAuthorAndStatus(username, status, page, size);
+	public PageForClient<DocumentForTable> getPageableDocumentsForClientByAuthorAndStatus(@PathVariable String username,
+			@PathVariable String status, @RequestParam(defaultValue = "0") int page, @RequestParam int size,
+			@RequestParam(required = false) Long afterId, @RequestParam(defaultValue = "true") boolean withTotal) {
+		return documentService.getPageableDocumentsForClientByAuthorAndStatus(username, status, page, size, afterId, withTotal);
 	}
 
 	@RequestMapping(path = "/documents-for-approval", method = RequestMethod.GET)
@@ -129,9 +139,10 @@ public class DocumentController {
 	
 	@RequestMapping(path = "/page/documents-for-approval", method = RequestMethod.GET)
 	@ApiOperation(value = "Get documents for approval for user", notes = "Returns list of documents for approval by DFA names list. Status must not be equalto SAVED")
-	public List<DocumentForTable> getPageableDocumentsForApprovalByDfaList(
-			@RequestParam final List<String> documentForApprovalNames, @RequestParam int page, @RequestParam int size) {
-		return documentService.getPageableDocumentsForApprovalByDfaList(documentForApprovalNames, "SAVED", page, size);
+	public PageForClient<DocumentForTable> getPageableDocumentsForApprovalByDfaList(
+			@RequestParam final List<String> documentForApprovalNames, @RequestParam(defaultValue = "0") int page, @RequestParam int size,
+			@RequestParam(required = false) Long afterId, @RequestParam(defaultValue = "true") boolean withTotal) {
+		return documentService.getPageableDocumentsForApprovalByDfaList(documentForApprovalNames, "SAVED", page, size, afterId, withTotal);
 	}
 	
 	@RequestMapping(path = "/documents-for-approval/containing/{titleText}", method = RequestMethod.GET)
@@ -143,9 +154,10 @@ public class DocumentController {
 	
 	@RequestMapping(path = "/page/documents-for-approval/containing/{titleText}", method = RequestMethod.GET)
 	@ApiOperation(value = "Get documents for approval for user containing text", notes = "Returns list of documents for approval by DFA names list containing titleText. Status must not be equalto SAVED")
-	public List<DocumentForTable> getPageableDocumentsForApprovalByDfaListContaining(
-			@RequestParam final List<String> documentForApprovalNames, @RequestParam int page, @RequestParam int size, @PathVariable String titleText) {
-		return documentService.getPageableDocumentsForApprovalByDfaListContaining(documentForApprovalNames, "SAVED", titleText, page, size);
+	public PageForClient<DocumentForTable> getPageableDocumentsForApprovalByDfaListContaining(
+			@RequestParam final List<String> documentForApprovalNames, @RequestParam(defaultValue = "0") int page, @RequestParam int size, @PathVariable String titleText,
+			@RequestParam(required = false) Long afterId, @RequestParam(defaultValue = "true") boolean withTotal) {
+		return documentService.getPageableDocumentsForApprovalByDfaListContaining(documentForApprovalNames, "SAVED", titleText, page, size, afterId, withTotal);
 	}
 
 	@RequestMapping(path = "/documents-for-approval/{status}", method = RequestMethod.GET)
@@ -157,21 +169,25 @@ public class DocumentController {
 	
 	@RequestMapping(path = "/page/documents-for-approval/{status}", method = RequestMethod.GET)
 	@ApiOperation(value = "Get documents for approval for user by status", notes = "Returns list of documents for approval by DFA names list and status")
-	public List<DocumentForTable> getPageableDocumentsForApprovalByDfaListAndStatus(
-			@RequestParam final List<String> documentForApprovalNames,@RequestParam int page, @RequestParam int size, @PathVariable String status) {
-		return documentService.getPageableDocumentsForApprovalByDfaListAndStatus(documentForApprovalNames, status, page, size);
+	public PageForClient<DocumentForTable> getPageableDocumentsForApprovalByDfaListAndStatus(
+			@RequestParam final List<String> documentForApprovalNames,@RequestParam(defaultValue = "0") int page, @RequestParam int size, @PathVariable String status,
+			@RequestParam(required = false) Long afterId, @RequestParam(defaultValue = "true") boolean withTotal) {
+		return documentService.getPageableDocumentsForApprovalByDfaListAndStatus(documentForApprovalNames, status, page, size, afterId, withTotal);
 	}
 
 	@RequestMapping(path = "/{id}/{username}", method = RequestMethod.GET)
 	@ApiOperation(value = "Get document by document id and username", notes = "Returns document by document id and username")
 	public DocumentForClient getDocumentForClientByIdAndUsername(@PathVariable String username, @PathVariable Long id) {
-		return documentService.getDocumentForClientByIdAndUsername(username, id);
+		// access is checked for the logged in user, the path keeps its old shape
+		return documentService.getDocumentForClientByIdAndUsername(
+				SecurityContextHolder.getContext().getAuthentication().getName(), id);
 	}
 
 	@RequestMapping(path = "/get/{id}/", method = RequestMethod.GET)
 	@ApiOperation(value = "Get document by document id", notes = "Returns document by document id")
 	public DocumentForClient getDocumentForClientById(@PathVariable Long id) {
-		return documentService.getDocumentForClientById(id);
+		return documentService.getDocumentForClientByIdAndUsername(
+				SecurityContextHolder.getContext().getAuthentication().getName(), id);
 	}
 
 	@RequestMapping(path = "/count/{docType}", method = RequestMethod.GET)
@@ -183,11 +199,37 @@ public class DocumentController {
 	}
 
 	@RequestMapping(path = "/topAuthors/{docType}", method = RequestMethod.GET)
-	@ApiOperation(value = "Get top 5 authors by docType", notes = "Returns top 5 authors by submitted document and doc type")
+	@ApiOperation(value = "Get top authors by docType", notes = "Returns top authors by submitted document and doc type, 5 unless limit (at most 100) is given, skipping offset authors. Equal counts are ordered by author")
 	public List<DocumentForStatistics> findTopAuthors(@PathVariable String docType,
 			@RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date startDate,
-			@RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date endDate) {
-		return documentService.findTopAuthors(docType, startDate, endDate, 5);
+			@RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date endDate,
+			@RequestParam(defaultValue = "5") int limit, @RequestParam(defaultValue = "0") int offset) {
+		return documentService.findTopAuthors(docType, startDate, endDate, limit, offset);
+	}
+
+	@RequestMapping(path = "/statistics", method = RequestMethod.GET)
+	@ApiOperation(value = "Get statistics for several doc types", notes = "Returns submitted, approved and rejected counts and the top authors (5 unless topAuthors is given) of each doc type, in the order of docTypes")
+	public List<DocumentStatisticsForDocType> findStatisticsForDocTypes(@RequestParam final List<String> docTypes,
+			@RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date startDate,
+			@RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date endDate,
+			@RequestParam(defaultValue = "5") int topAuthors) {
+		return documentService.findStatisticsForDocTypes(docTypes, startDate, endDate, topAuthors);
+	}
+
+	@RequestMapping(path = "/statistics/series/{docType}", method = RequestMethod.GET)
+	@ApiOperation(value = "Get statistics of a doc type over time", notes = "Returns submitted, approved and rejected counts and review latency percentiles in seconds for each DAY, WEEK (ISO) or MONTH from startDate to endDate")
+	public List<DocumentStatisticsBucket> findStatisticsSeries(@PathVariable String docType,
+			@RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date startDate,
+			@RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date endDate,
+			@RequestParam(defaultValue = "DAY") StatisticsBucket bucket) {
+		return documentService.findStatisticsSeries(docType, startDate, endDate, bucket);
+	}
+
+	@RequestMapping(path = "/known-files", method = RequestMethod.POST)
+	@ApiOperation(value = "Check which files need no upload", notes = "Takes SHA-256 and size of each file, returns the hashes of those already stored among the user's own files. They can be attached by reference through the knownFiles part")
+	public Set<String> findKnownFiles(@ApiParam(required = true) @Valid @RequestBody final List<FileFingerprint> fingerprints) {
+		return documentService.findKnownContentHashes(fingerprints,
+				SecurityContextHolder.getContext().getAuthentication().getName());
 	}
 
 	@RequestMapping(path = "/save", method = RequestMethod.POST)
@@ -195,16 +237,13 @@ public class DocumentController {
 	@ResponseStatus(HttpStatus.CREATED)
 	public List<UploadFileResponse> saveDocumentWithMultipleFiles(
 			@ApiParam(required = true) @Valid @ModelAttribute final NewDocument newDocument,
-			@RequestParam("files") MultipartFile[] files) {
+			@RequestParam(value = "files", required = false) MultipartFile[] files,
+			@RequestPart(value = "knownFiles", required = false) List<FileFingerprint> knownFiles) {
 
-		List<DBFile> dBFiles = documentService.saveDocumentWithMultipleFiles(newDocument, files);
-		List<UploadFileResponse> list = new ArrayList<UploadFileResponse>();
-		for (int i = 0; i < files.length; i++) {
-			String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath().path("/downloadFile/")
-					.path(dBFiles.get(i).getId()).toUriString();
-			list.add(new UploadFileResponse(dBFiles.get(i).getFileName(), fileDownloadUri, files[i].getContentType(),
-					files[i].getSize()));
-		}
+		List<DBFile> dBFiles = documentService.saveDocumentWithMultipleFiles(newDocument,
+				files != null ? files : new MultipartFile[0], knownFiles,
+				SecurityContextHolder.getContext().getAuthentication().getName());
+		List<UploadFileResponse> list = toUploadFileResponses(dBFiles);
 		
 		LOGGER.info("Action by {}. Saved document. Title: {}",
 				SecurityContextHolder.getContext().getAuthentication().getName(), newDocument.getTitle());
@@ -216,16 +255,13 @@ public class DocumentController {
 	@ResponseStatus(HttpStatus.CREATED)
 	public List<UploadFileResponse> submitDocument(
 			@ApiParam(required = true) @Valid @ModelAttribute final NewDocument newDocument,
-			@RequestParam("files") MultipartFile[] files) {
+			@RequestParam(value = "files", required = false) MultipartFile[] files,
+			@RequestPart(value = "knownFiles", required = false) List<FileFingerprint> knownFiles) {
 
-		List<DBFile> dBFiles = documentService.submitDocument(newDocument, files);
-		List<UploadFileResponse> list = new ArrayList<UploadFileResponse>();
-		for (int i = 0; i < files.length; i++) {
-			String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath().path("/downloadFile/")
-					.path(dBFiles.get(i).getId()).toUriString();
-			list.add(new UploadFileResponse(dBFiles.get(i).getFileName(), fileDownloadUri, files[i].getContentType(),
-					files[i].getSize()));
-		}
+		List<DBFile> dBFiles = documentService.submitDocument(newDocument,
+				files != null ? files : new MultipartFile[0], knownFiles,
+				SecurityContextHolder.getContext().getAuthentication().getName());
+		List<UploadFileResponse> list = toUploadFileResponses(dBFiles);
 		LOGGER.info("Action by {}. Submitted document. Title: {}",
 				SecurityContextHolder.getContext().getAuthentication().getName(), newDocument.getTitle());
 		return list;
@@ -235,16 +271,13 @@ public class DocumentController {
 	@ApiOperation(value = "Update document info after save for later")
 	public List<UploadFileResponse> submitDocumentAfterSaveForLater(
 			@ApiParam(required = true) @Valid @PathVariable Long id, @ModelAttribute final NewDocument newDocument,
-			@RequestParam("files") MultipartFile[] files) {
+			@RequestParam(value = "files", required = false) MultipartFile[] files,
+			@RequestPart(value = "knownFiles", required = false) List<FileFingerprint> knownFiles) {
 
-		List<DBFile> dBFiles = documentService.submitDocumentAfterSaveForLater(id, newDocument, files);
-		List<UploadFileResponse> list = new ArrayList<UploadFileResponse>();
-		for (int i = 0; i < files.length; i++) {
-			String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath().path("/downloadFile/")
-					.path(dBFiles.get(i).getId()).toUriString();
-			list.add(new UploadFileResponse(dBFiles.get(i).getFileName(), fileDownloadUri, files[i].getContentType(),
-					files[i].getSize()));
-		}
+		List<DBFile> dBFiles = documentService.submitDocumentAfterSaveForLater(id, newDocument,
+				files != null ? files : new MultipartFile[0], knownFiles,
+				SecurityContextHolder.getContext().getAuthentication().getName());
+		List<UploadFileResponse> list = toUploadFileResponses(dBFiles);
 		LOGGER.info("Action by {}. Submitted already saved document. Id: {}",
 				SecurityContextHolder.getContext().getAuthentication().getName(), id);
 		return list;
@@ -254,16 +287,13 @@ public class DocumentController {
 	@ApiOperation(value = "Update document info after save for later")
 	public List<UploadFileResponse> saveDocumentAfterSaveForLater(
 			@ApiParam(required = true) @Valid @PathVariable Long id, @ModelAttribute final NewDocument newDocument,
-			@RequestParam("files") MultipartFile[] files) {
+			@RequestParam(value = "files", required = false) MultipartFile[] files,
+			@RequestPart(value = "knownFiles", required = false) List<FileFingerprint> knownFiles) {
 
-		List<DBFile> dBFiles = documentService.saveDocumentAfterSaveForLater(id, newDocument, files);
-		List<UploadFileResponse> list = new ArrayList<UploadFileResponse>();
-		for (int i = 0; i < files.length; i++) {
-			String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath().path("/downloadFile/")
-					.path(dBFiles.get(i).getId()).toUriString();
-			list.add(new UploadFileResponse(dBFiles.get(i).getFileName(), fileDownloadUri, files[i].getContentType(),
-					files[i].getSize()));
-		}
+		List<DBFile> dBFiles = documentService.saveDocumentAfterSaveForLater(id, newDocument,
+				files != null ? files : new MultipartFile[0], knownFiles,
+				SecurityContextHolder.getContext().getAuthentication().getName());
+		List<UploadFileResponse> list = toUploadFileResponses(dBFiles);
 		LOGGER.info("Action by {}. Saved already saved document. Id: {}",
 				SecurityContextHolder.getContext().getAuthentication().getName(), id);
 		return list;
@@ -304,4 +334,14 @@ public class DocumentController {
 
 	}
 
+	private List<UploadFileResponse> toUploadFileResponses(List<DBFile> dBFiles) {
+		List<UploadFileResponse> list = new ArrayList<UploadFileResponse>();
+		for (DBFile dBFile : dBFiles) {
+			String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/file/downloadFile/")
+					.path(dBFile.getId()).toUriString();
+			list.add(new UploadFileResponse(dBFile.getFileName(), fileDownloadUri, dBFile.getFileType(),
+					dBFile.getFileSize()));
+		}
+		return list;
+	}
 }
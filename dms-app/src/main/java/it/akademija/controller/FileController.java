@@ -1,77 +1,135 @@
 package it.akademija.controller;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import io.swagger.annotations.ApiOperation;
 import it.akademija.model.file.DBFile;
+import it.akademija.file.cache.CacheStats;
+import it.akademija.file.export.ExportJob;
+import it.akademija.file.exceptions.FileStorageException;
+import it.akademija.file.storage.BlobResource;
+import it.akademija.file.storage.BlobStore;
+import it.akademija.file.storage.ContentTypes;
+import it.akademija.model.file.DBFileMetadata;
 import it.akademija.model.file.DBFileNameAndId;
+import it.akademija.model.file.ExportJobForClient;
 import it.akademija.model.file.UploadFileResponse;
 import it.akademija.service.DBFileStorageService;
+import it.akademija.service.ExportJobService;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 
-import javax.servlet.http.HttpServletResponse;
-
 @RestController
 @RequestMapping(value = "/api/file")
 public class FileController {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(FileController.class);
 
+	// uploaded files are never modified, so a cached copy never needs revalidating
+	private static final String FILE_CACHE_CONTROL = "private, max-age=31536000, immutable";
+
+	// request attributes of Tomcat's sendfile support, see its DefaultServlet
+	private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+	// below this the plain write is as cheap, the DefaultServlet uses the same limit
+	private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
 	
 	private DBFileStorageService dbFileStorageService;
 
+	private ExportJobService exportJobService;
+
 	@Autowired
-	public FileController(DBFileStorageService dbFileStorageService) {
+	public FileController(DBFileStorageService dbFileStorageService, ExportJobService exportJobService) {
 		this.dbFileStorageService = dbFileStorageService;
+		this.exportJobService = exportJobService;
 	}
 
 
 	@RequestMapping(value = "/download-files-zip/{username}", method = RequestMethod.GET, produces = "application/zip")
-	public byte[] downloadFiles(HttpServletResponse response, @PathVariable("username") String username)
-			throws IOException {
-		response.setContentType("application/zip");
-		response.setStatus(HttpServletResponse.SC_OK);
+	public ResponseEntity<StreamingResponseBody> downloadFiles(@PathVariable("username") String username) {
 		String headerValue = String.format("attachment; filename=\"%s_files.zip\"", username);
-		response.addHeader("Content-Disposition", headerValue);
-		return dbFileStorageService.zipFiles(dbFileStorageService.getAllFilesByUsername(username));
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/zip"))
+				.header(HttpHeaders.CONTENT_DISPOSITION, headerValue)
+				.body(outputStream -> dbFileStorageService.zipFiles(username, false, outputStream));
 	}
 	
 	@RequestMapping(value = "/download-files-csv-zip/{username}", method = RequestMethod.GET, produces = "application/zip")
-	public byte[] downloadFilesAndCsv(HttpServletResponse response, @PathVariable("username") String username)
-			throws IOException {
+	public ResponseEntity<StreamingResponseBody> downloadFilesAndCsv(@PathVariable("username") String username) {
 		
 		LOGGER.info("Action by {}. Downloaded zip archive",
 				SecurityContextHolder.getContext().getAuthentication().getName());
 		
-		response.setContentType("application/zip");
-		response.setStatus(HttpServletResponse.SC_OK);
 		String headerValue = String.format("attachment; filename=\"%s_files.zip\"", username);
-		response.addHeader("Content-Disposition", headerValue);
-		
-		return dbFileStorageService.zipFiles(dbFileStorageService.getAllFilesAndCsvByUsername(username));
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/zip"))
+				.header(HttpHeaders.CONTENT_DISPOSITION, headerValue)
+				.body(outputStream -> dbFileStorageService.zipFiles(username, true, outputStream));
 	}
 	
+	@RequestMapping(path = "/export-jobs/{username}", method = RequestMethod.POST)
+	@ApiOperation(value = "Start zip export in background", notes = "Returns export job, an identical export already in progress is reused")
+	@ResponseStatus(HttpStatus.ACCEPTED)
+	public ExportJobForClient submitExportJob(@PathVariable("username") String username,
+			@RequestParam(defaultValue = "true") boolean withCsv) {
+		String requestedBy = SecurityContextHolder.getContext().getAuthentication().getName();
+		ExportJob job = exportJobService.submit(username, withCsv, requestedBy);
+
+		LOGGER.info("Action by {}. Requested zip archive export. Job id: {}", requestedBy, job.getId());
+		return new ExportJobForClient(job);
+	}
+
+	@RequestMapping(path = "/export-jobs/{jobId}", method = RequestMethod.GET)
+	@ApiOperation(value = "Get export job progress")
+	public ExportJobForClient getExportJob(@PathVariable String jobId) {
+		return new ExportJobForClient(exportJobService.getJob(jobId,
+				SecurityContextHolder.getContext().getAuthentication().getName()));
+	}
+
+	@RequestMapping(path = "/export-jobs/{jobId}/download", method = RequestMethod.GET)
+	@ApiOperation(value = "Download finished export", notes = "Answers 409 while the export is not ready")
+	public ResponseEntity<?> downloadExport(@PathVariable String jobId) {
+		ExportJob job = exportJobService.getJob(jobId, SecurityContextHolder.getContext().getAuthentication().getName());
+		if (job.getStatus() != ExportJob.Status.READY) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(new ExportJobForClient(job));
+		}
+
+		LOGGER.info("Action by {}. Downloaded zip archive", job.getRequestedBy());
+
+		String headerValue = String.format("attachment; filename=\"%s_files.zip\"", job.getUsername());
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/zip"))
+				.header(HttpHeaders.CONTENT_DISPOSITION, headerValue).body(new FileSystemResource(job.getArchive()));
+	}
+
 	@RequestMapping(path = "/uploadFile", method = RequestMethod.POST)
 	@ResponseStatus(HttpStatus.CREATED)
 	public UploadFileResponse uploadFile(@RequestParam("file") MultipartFile file) {
 		DBFile dbFile = dbFileStorageService.storeFile(file);
 
-		String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath().path("/downloadFile/")
+		String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/file/downloadFile/")
 				.path(dbFile.getId()).toUriString();
 		return new UploadFileResponse(dbFile.getFileName(), fileDownloadUri, file.getContentType(), file.getSize());
 	}
@@ -89,16 +147,171 @@ public class FileController {
 	}
 
 	@GetMapping("/downloadFile/{fileId}")
-	public ResponseEntity<Resource> downloadFile(@PathVariable String fileId) {
-		// Load file from database
-		DBFile dbFile = dbFileStorageService.getFile(fileId);
+	public ResponseEntity<?> downloadFile(@PathVariable String fileId, @RequestHeader HttpHeaders requestHeaders,
+			HttpServletRequest request) {
+		// Load file metadata from database, the content is streamed from the blob store
+		DBFileMetadata dbFile = dbFileStorageService.getFileMetadata(fileId);
+		String eTag = "\"" + dbFile.getContentHash() + "\"";
+		String gzipETag = "\"" + dbFile.getContentHash() + ".gz\"";
+		long fileSize = dbFile.getFileSize();
+
+		// file content never changes, a matching validator means the client copy is current
+		String cachedETag = getMatchingETag(requestHeaders, eTag, gzipETag);
+		if (cachedETag != null) {
+			return fileResponse(HttpStatus.NOT_MODIFIED, dbFile, cachedETag).build();
+		}
 
 		LOGGER.info("Action by {}. Downloaded file. File name: {}",
 				SecurityContextHolder.getContext().getAuthentication().getName(), dbFile.getFileName());
-		
-		return ResponseEntity.ok().contentType(MediaType.parseMediaType(dbFile.getFileType()))
-				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + dbFile.getFileName() + "\"")
-				.body(new ByteArrayResource(dbFile.getData()));
+
+		String storedEncoding = dbFileStorageService.getStoredEncoding(dbFile);
+		HttpRange range = getSingleRange(requestHeaders, eTag);
+		if (range == null && BlobStore.GZIP.equals(storedEncoding) && acceptsGzip(requestHeaders)) {
+			// stored gzipped, hand the bytes over as they are and let the client inflate them
+			long storedSize = dbFileStorageService.getStoredSize(dbFile);
+			ResponseEntity.BodyBuilder response = fileResponse(HttpStatus.OK, dbFile, gzipETag)
+					.contentLength(storedSize).header(HttpHeaders.CONTENT_ENCODING, BlobStore.GZIP);
+			if (sendfile(request, dbFileStorageService.getStoredPath(dbFile), 0, storedSize)) {
+				return response.build();
+			}
+			return response.body(new InputStreamResource(dbFileStorageService.getStoredContent(dbFile)));
+		}
+
+		// a blob stored as is can go straight from its file to the socket
+		Path plainFile = storedEncoding == null ? dbFileStorageService.getStoredPath(dbFile) : null;
+		if (range != null) {
+			BlobResource resource = dbFileStorageService.getFileResource(dbFile);
+			ResourceRegion region;
+			try {
+				// RFC 7233 asks for 416 here, checked explicitly instead of relying on how toResourceRegion asserts
+				if (range.getRangeStart(fileSize) >= fileSize) {
+					throw new IllegalArgumentException("Range starts after the end of the file");
+				}
+				region = range.toResourceRegion(resource);
+			} catch (IllegalArgumentException ex) {
+				return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+						.header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize).build();
+			}
+			long end = region.getPosition() + region.getCount() - 1;
+			ResponseEntity.BodyBuilder response = fileResponse(HttpStatus.PARTIAL_CONTENT, dbFile, eTag)
+					.header(HttpHeaders.ACCEPT_RANGES, "bytes").contentLength(region.getCount())
+					.header(HttpHeaders.CONTENT_RANGE, "bytes " + region.getPosition() + "-" + end + "/" + fileSize);
+			if (sendfile(request, plainFile, region.getPosition(), region.getCount())) {
+				return response.build();
+			}
+			// a ResourceRegion body has no converter behind ResponseEntity<?>, the range goes out as a plain stream
+			try {
+				return response.body(
+						new InputStreamResource(resource.getInputStream(region.getPosition(), region.getCount())));
+			} catch (IOException ex) {
+				throw new FileStorageException("Could not read file " + dbFile.getFileName(), ex);
+			}
+		}
+
+		ResponseEntity.BodyBuilder response = fileResponse(HttpStatus.OK, dbFile, eTag).contentLength(fileSize)
+				.header(HttpHeaders.ACCEPT_RANGES, "bytes");
+		if (sendfile(request, plainFile, 0, fileSize)) {
+			return response.build();
+		}
+		return response.body(new InputStreamResource(dbFileStorageService.getFileResource(dbFile).getInputStream()));
+	}
+
+	// Leaves the body to Tomcat, which writes the file region with sendfile when the
+	// connector supports it (plain HTTP on NIO or APR) without copying it through the heap.
+	// Returns false when the body has to be written by us
+	private boolean sendfile(HttpServletRequest request, Path file, long start, long length) {
+		if (file == null || length < SENDFILE_MIN_SIZE || "HEAD".equals(request.getMethod())
+				|| !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+			return false;
+		}
+		request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+		request.setAttribute(SENDFILE_START_ATTR, start);
+		request.setAttribute(SENDFILE_END_ATTR, start + length);
+		return true;
+	}
+
+	private ResponseEntity.BodyBuilder fileResponse(HttpStatus status, DBFileMetadata dbFile, String eTag) {
+		ResponseEntity.BodyBuilder builder = ResponseEntity.status(status).eTag(eTag)
+				.header(HttpHeaders.CACHE_CONTROL, FILE_CACHE_CONTROL)
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (status == HttpStatus.NOT_MODIFIED) {
+			return builder;
+		}
+		// rows stored before file types were checked may carry no usable type
+		String fileType = ContentTypes.normalize(dbFile.getFileType());
+		return builder.contentType(MediaType.parseMediaType(fileType != null ? fileType : ContentTypes.DEFAULT_TYPE))
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + dbFile.getFileName() + "\"");
+	}
+
+	// Returns the validator from If-None-Match that matches one of ours, compared
+	// weakly as RFC 7232 asks for, or null when the file has to be sent
+	private String getMatchingETag(HttpHeaders requestHeaders, String... eTags) {
+		for (String header : requestHeaders.getOrEmpty(HttpHeaders.IF_NONE_MATCH)) {
+			for (String candidate : header.split(",")) {
+				String value = candidate.trim();
+				if (value.equals("*")) {
+					return eTags[0];
+				}
+				if (value.startsWith("W/")) {
+					value = value.substring(2);
+				}
+				for (String eTag : eTags) {
+					if (eTag.equals(value)) {
+						return eTag;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	// Returns the requested range, or null when the whole file should be sent:
+	// no Range header, a malformed or multi-part one, or a stale If-Range validator
+	private HttpRange getSingleRange(HttpHeaders requestHeaders, String eTag) {
+		List<HttpRange> ranges;
+		try {
+			ranges = requestHeaders.getRange();
+		} catch (IllegalArgumentException ex) {
+			return null;
+		}
+		if (ranges.size() != 1) {
+			return null;
+		}
+		String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+		if (ifRange != null && !ifRange.equals(eTag)) {
+			return null;
+		}
+		return ranges.get(0);
+	}
+
+	// True when Accept-Encoding allows gzip, an explicit gzip entry wins over *
+	private boolean acceptsGzip(HttpHeaders requestHeaders) {
+		Boolean gzip = null;
+		boolean wildcard = false;
+		for (String header : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+			for (String token : header.split(",")) {
+				String[] parts = token.trim().split(";");
+				String coding = parts[0].trim().toLowerCase();
+				boolean accepted = true;
+				for (int i = 1; i < parts.length; i++) {
+					if (parts[i].replace(" ", "").matches("[qQ]=0(\\.0{0,3})?")) {
+						accepted = false;
+					}
+				}
+				if (coding.equals(BlobStore.GZIP) || coding.equals("x-gzip")) {
+					gzip = accepted;
+				} else if (coding.equals("*")) {
+					wildcard = accepted;
+				}
+			}
+		}
+		return gzip != null ? gzip : wildcard;
+	}
+
+	@RequestMapping(path = "/cache-stats", method = RequestMethod.GET)
+	@ApiOperation(value = "Get download cache statistics", notes = "Returns hits, misses, admissions and evictions per cache")
+	public Map<String, CacheStats> getCacheStats() {
+		return dbFileStorageService.getCacheStats();
 	}
 
 	@RequestMapping(path = "/{fileId}", method = RequestMethod.DELETE)
@@ -0,0 +1,93 @@
+package it.akademija.controller;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import it.akademija.model.file.DBFile;
+import it.akademija.model.file.NewUploadSession;
+import it.akademija.model.file.UploadFileResponse;
+import it.akademija.model.file.UploadSessionForClient;
+import it.akademija.service.UploadSessionService;
+
+@RestController
+@RequestMapping(value = "/api/file/uploads")
+public class UploadSessionController {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(UploadSessionController.class);
+
+	private final UploadSessionService uploadSessionService;
+
+	@Autowired
+	public UploadSessionController(UploadSessionService uploadSessionService) {
+		this.uploadSessionService = uploadSessionService;
+	}
+
+	@RequestMapping(method = RequestMethod.POST)
+	@ApiOperation(value = "Start chunked upload", notes = "Returns upload session, chunks are sent with PUT afterwards")
+	@ResponseStatus(HttpStatus.CREATED)
+	public UploadSessionForClient createSession(
+			@ApiParam(required = true) @Valid @RequestBody final NewUploadSession newUploadSession) {
+		String username = SecurityContextHolder.getContext().getAuthentication().getName();
+		UploadSessionForClient session = new UploadSessionForClient(
+				uploadSessionService.createSession(newUploadSession, username));
+
+		LOGGER.info("Action by {}. Started chunked upload. File name: {}", username, session.getFileName());
+		return session;
+	}
+
+	@RequestMapping(path = "/{uploadId}", method = RequestMethod.GET)
+	@ApiOperation(value = "Get upload progress", notes = "Returns received bytes and the next chunk to send")
+	public UploadSessionForClient getSession(@PathVariable String uploadId) {
+		return new UploadSessionForClient(uploadSessionService.getSession(uploadId,
+				SecurityContextHolder.getContext().getAuthentication().getName()));
+	}
+
+	@RequestMapping(path = "/{uploadId}/chunks/{index}", method = RequestMethod.PUT)
+	@ApiOperation(value = "Upload one chunk", notes = "Raw chunk bytes in the body, X-Chunk-SHA256 holds their hex encoded SHA-256")
+	public UploadSessionForClient uploadChunk(@PathVariable String uploadId, @PathVariable int index,
+			@RequestHeader("X-Chunk-SHA256") String checksum, HttpServletRequest request) throws IOException {
+		return new UploadSessionForClient(uploadSessionService.writeChunk(uploadId, index, checksum,
+				request.getInputStream(), SecurityContextHolder.getContext().getAuthentication().getName()));
+	}
+
+	@RequestMapping(path = "/{uploadId}/complete", method = RequestMethod.POST)
+	@ApiOperation(value = "Finish chunked upload", notes = "Stores the file and attaches it to the document")
+	@ResponseStatus(HttpStatus.CREATED)
+	public UploadFileResponse completeSession(@PathVariable String uploadId) {
+		String username = SecurityContextHolder.getContext().getAuthentication().getName();
+		DBFile dbFile = uploadSessionService.completeSession(uploadId, username);
+
+		LOGGER.info("Action by {}. Uploaded file. File name: {}", username, dbFile.getFileName());
+
+		String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/file/downloadFile/")
+				.path(dbFile.getId()).toUriString();
+		return new UploadFileResponse(dbFile.getFileName(), fileDownloadUri, dbFile.getFileType(),
+				dbFile.getFileSize());
+	}
+
+	@RequestMapping(path = "/{uploadId}", method = RequestMethod.DELETE)
+	@ApiOperation(value = "Cancel chunked upload")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void cancelSession(@PathVariable String uploadId) {
+		uploadSessionService.cancelSession(uploadId, SecurityContextHolder.getContext().getAuthentication().getName());
+	}
+
+}
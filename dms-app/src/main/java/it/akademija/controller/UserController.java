@@ -22,6 +22,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import it.akademija.model.page.PageForClient;
 import it.akademija.model.user.NewUser;
 import it.akademija.model.user.User;
 import it.akademija.model.user.UserForClient;
@@ -54,8 +55,9 @@ public class UserController {
 	
 	@RequestMapping(path = "/page", method = RequestMethod.GET)
 	@ApiOperation(value = "Get Users", notes = "Returns list of all users")
-	public List<UserForTable> getUsersForClientPageable(@RequestParam int page, @RequestParam int size) {
-		return userService.getPageableUsersForClient(page, size);
+	public PageForClient<UserForTable> getUsersForClientPageable(@RequestParam int page, @RequestParam int size,
+			@RequestParam(defaultValue = "true") boolean withTotal) {
+		return userService.getPageableUsersForClient(page, size, withTotal);
 	}
 	
 	
@@ -67,8 +69,9 @@ public class UserController {
 
 	@RequestMapping(path = "page/containing/{userText}", method = RequestMethod.GET)
 	@ApiOperation(value = "Get Users containing text", notes = "Returns list of users containing passed String")
-	public List<UserForTable> getPageableUsersForClientContaining(@PathVariable String userText, @RequestParam int page, @RequestParam int size) {
-		return userService.getPageableUsersForClientContaining(userText, page, size);
+	public PageForClient<UserForTable> getPageableUsersForClientContaining(@PathVariable String userText, @RequestParam int page, @RequestParam int size,
+			@RequestParam(defaultValue = "true") boolean withTotal) {
+		return userService.getPageableUsersForClientContaining(userText, page, size, withTotal);
 	}
 	
 	@RequestMapping(path = "/containing/{userText}", method = RequestMethod.GET)
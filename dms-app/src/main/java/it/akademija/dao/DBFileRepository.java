@@ -1,16 +1,50 @@
 package it.akademija.dao;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import it.akademija.model.file.DBFile;
+import it.akademija.model.file.DBFileMetadata;
 
 @Repository
 public interface DBFileRepository extends JpaRepository<DBFile, String> {
 
 	void deleteById(String id);
 	List<DBFile> findByDocumentId(Long id);
-	
-}
\ No newline at end of file
+
+	@Query("SELECT new it.akademija.model.file.DBFileMetadata(f.id, f.fileName, f.fileType, f.fileSize, f.contentHash, d.id) FROM DBFile f JOIN f.document d WHERE d.id = :documentId")
+	List<DBFileMetadata> findMetadataByDocumentId(@Param("documentId") Long documentId);
+
+	@Query("SELECT new it.akademija.model.file.DBFileMetadata(f.id, f.fileName, f.fileType, f.fileSize, f.contentHash, d.id) FROM DBFile f JOIN f.document d WHERE d.author = :author")
+	List<DBFileMetadata> findMetadataByAuthor(@Param("author") String author);
+
+	@Query("SELECT new it.akademija.model.file.DBFileMetadata(f.id, f.fileName, f.fileType, f.fileSize, f.contentHash, d.id) FROM DBFile f JOIN f.document d WHERE d.author = :author AND f.contentHash IN :hashes")
+	List<DBFileMetadata> findMetadataByAuthorAndContentHashIn(@Param("author") String author,
+			@Param("hashes") Collection<String> hashes);
+
+	@Query("SELECT new it.akademija.model.file.DBFileMetadata(f.id, f.fileName, f.fileType, f.fileSize, f.contentHash, d.id) FROM DBFile f LEFT JOIN f.document d WHERE f.id = :id")
+	Optional<DBFileMetadata> findMetadataById(@Param("id") String id);
+
+	// rows without a document come from the plain upload endpoints and nothing attaches them later
+	@Query("SELECT f.id FROM DBFile f WHERE f.document IS NULL AND (f.createDate IS NULL OR f.createDate < :before)")
+	List<String> findOrphanedIds(@Param("before") Date before, Pageable pageable);
+
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM DBFile f WHERE f.id IN :ids")
+	int deleteByIdIn(@Param("ids") List<String> ids);
+
+	@Query("SELECT DISTINCT f.contentHash FROM DBFile f WHERE f.contentHash IN :hashes")
+	List<String> findReferencedContentHashes(@Param("hashes") Collection<String> hashes);
+
+}
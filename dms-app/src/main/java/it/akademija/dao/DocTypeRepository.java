@@ -3,8 +3,11 @@ package it.akademija.dao;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import it.akademija.model.doctype.DocType;
+import it.akademija.model.doctype.DocTypeForClient;
 
 
 public interface DocTypeRepository extends JpaRepository<DocType, Long>  {
@@ -15,4 +18,10 @@ public interface DocTypeRepository extends JpaRepository<DocType, Long>  {
 	void deleteByComment (String comment);
 	List<DocType> findByIdContainingIgnoreCase(String docTypeText);
 
+	@Query("SELECT d.id FROM DocType d ORDER BY d.createDate DESC")
+	List<String> findAllDocTypeNames();
+
+	@Query("SELECT new it.akademija.model.doctype.DocTypeForClient(d.id, d.comment) FROM DocType d WHERE d.id = :id")
+	DocTypeForClient findDocTypeForClientById(@Param("id") String docTypeName);
+
 }
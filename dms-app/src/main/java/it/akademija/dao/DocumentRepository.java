@@ -2,8 +2,10 @@ package it.akademija.dao;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,22 +14,31 @@ import it.akademija.model.document.Document;
 public interface DocumentRepository extends JpaRepository<Document, Long> {
 
 	List<Document> findByAuthorOrderByIdDesc(String username);
-	List<Document> findByAuthorOrderByIdDesc(String username, Pageable pageable);
+	Slice<Document> findByAuthorOrderByIdDesc(String username, Pageable pageable);
+	Slice<Document> findByAuthorAndIdLessThanOrderByIdDesc(String username, Long afterId, Pageable pageable);
 	long countByAuthor(String username);
 
 	List<Document> findByAuthorAndTitleContainingIgnoreCaseOrderByIdDesc(String username, String title);
-	List<Document> findByAuthorAndTitleContainingIgnoreCaseOrderByIdDesc(String username, String title, Pageable pageable);
+	Slice<Document> findByAuthorAndTitleContainingIgnoreCaseOrderByIdDesc(String username, String title, Pageable pageable);
+	Slice<Document> findByAuthorAndTitleContainingIgnoreCaseAndIdLessThanOrderByIdDesc(String username, String title, Long afterId, Pageable pageable);
 	long countByAuthorAndTitleContainingIgnoreCase(String username, String title);
 
 	List<Document> findByAuthor(String username);
 
+	@Query("SELECT DISTINCT d FROM Document d LEFT JOIN FETCH d.DBfiles WHERE d.id = :id")
+	Optional<Document> findWithFilesById(@Param("id") Long id);
+
 	@Query("SELECT d FROM Document d WHERE d.docType IN(:names) and d.status != :status and d.title like %:title% ORDER BY d.id DESC")
 	List<Document> findDocumentsForApprovalContaining(@Param("names") List<String> names,
 			@Param("status") String status, @Param("title") String titleText);
 	
 	@Query("SELECT d FROM Document d WHERE d.docType IN(:names) and d.status != :status and d.title like %:title% ORDER BY d.id DESC")
-	List<Document> findDocumentsForApprovalContaining(@Param("names") List<String> names,
+	Slice<Document> findDocumentsForApprovalContaining(@Param("names") List<String> names,
 			@Param("status") String status, @Param("title") String titleText, Pageable pageable);
+
+	@Query("SELECT d FROM Document d WHERE d.docType IN(:names) and d.status != :status and d.title like %:title% and d.id < :afterId ORDER BY d.id DESC")
+	Slice<Document> findDocumentsForApprovalContainingAfter(@Param("names") List<String> names,
+			@Param("status") String status, @Param("title") String titleText, @Param("afterId") Long afterId, Pageable pageable);
 	
 	@Query("SELECT COUNT(d) FROM Document d WHERE d.docType IN(:names) and d.status != :status and d.title like %:title%")
 	long countDFAContaining(@Param("names") List<String> names,
@@ -37,7 +48,12 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
 	List<Document> findDocumentsForApproval(@Param("names") List<String> names, @Param("status") String status);
 	
 	@Query("SELECT d FROM Document d WHERE d.docType IN(:names) and d.status != :status ORDER BY d.id DESC")
-	List<Document> findDocumentsForApproval(@Param("names") List<String> names, @Param("status") String status, Pageable pageable);
+	Slice<Document> findDocumentsForApproval(@Param("names") List<String> names, @Param("status") String status, Pageable pageable);
+
+	@Query("SELECT d FROM Document d WHERE d.docType IN(:names) and d.status != :status and d.id < :afterId ORDER BY d.id DESC")
+	Slice<Document> findDocumentsForApprovalAfter(@Param("names") List<String> names, @Param("status") String status,
+			@Param("afterId") Long afterId, Pageable pageable);
+
 	@Query("SELECT COUNT(d) FROM Document d WHERE d.docType IN(:names) and d.status != :status")
 	long countDFA(@Param("names") List<String> names, @Param("status") String status);
 
@@ -45,27 +61,25 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
 	List<Document> findDocumentsForApprovalByStatus(@Param("names") List<String> names, @Param("status") String status);
 	
 	@Query("SELECT d FROM Document d WHERE d.docType IN(:names) and d.status = :status ORDER BY d.id DESC")
-	List<Document> findDocumentsForApprovalByStatus(@Param("names") List<String> names, @Param("status") String status, Pageable pageable);
+	Slice<Document> findDocumentsForApprovalByStatus(@Param("names") List<String> names, @Param("status") String status, Pageable pageable);
+
+	@Query("SELECT d FROM Document d WHERE d.docType IN(:names) and d.status = :status and d.id < :afterId ORDER BY d.id DESC")
+	Slice<Document> findDocumentsForApprovalByStatusAfter(@Param("names") List<String> names, @Param("status") String status,
+			@Param("afterId") Long afterId, Pageable pageable);
 	
 	@Query("SELECT COUNT(d) FROM Document d WHERE d.docType IN(:names) and d.status = :status")
 	long countDFAByStatus(@Param("names") List<String> names, @Param("status") String status);
 
-	void deleteByDescription(String description);
+	List<Document> deleteByDescription(String description);
 
 	List<Document> findByAuthorAndStatusOrderByIdDesc(String username, String status);
-	List<Document> findByAuthorAndStatusOrderByIdDesc(String username, String status, Pageable pageable);
+	Slice<Document> findByAuthorAndStatusOrderByIdDesc(String username, String status, Pageable pageable);
+	Slice<Document> findByAuthorAndStatusAndIdLessThanOrderByIdDesc(String username, String status, Long afterId, Pageable pageable);
 	long countByAuthorAndStatus(String username, String status);
 	
 
-	@Query("SELECT new it.akademija.model.document.Document(COUNT(d), d.author) FROM Document d WHERE d.docType=:docType and d.status != 'SAVED' and d.submissionDate BETWEEN :startDate AND :endDate GROUP BY d.author ORDER BY COUNT(d) DESC")
-	List<Document> findTopAuthors(@Param("docType") String docType, @Param("startDate") Date startDate,
-			@Param("endDate") Date endDate);
-
-	@Query("SELECT COUNT(d) FROM Document d WHERE d.docType =:docType and d.status =:status and d.submissionDate BETWEEN :startDate AND :endDate")
-	Long countByDocTypeAndStatusAndDate(@Param("docType") String docType, @Param("status") String status,
-			@Param("startDate") Date startDate, @Param("endDate") Date endDate);
-
-	@Query("SELECT COUNT(d) FROM Document d WHERE d.docType =:docType and d.status != 'SAVED' and d.submissionDate BETWEEN :startDate AND :endDate")
-	Long countAllSubittedByDocTypeAndDate(@Param("docType") String docType, @Param("startDate") Date startDate,
-			@Param("endDate") Date endDate);
+	// authors with the same count are ordered by name, so pages never overlap
+	@Query(value = "SELECT d.author, COUNT(*) FROM document d WHERE d.doc_type = :docType AND d.status <> 'SAVED' AND d.submission_date >= :startDate AND d.submission_date < :dayAfterEndDate GROUP BY d.author ORDER BY COUNT(*) DESC, d.author ASC LIMIT :limit OFFSET :offset", nativeQuery = true)
+	List<Object[]> findTopAuthors(@Param("docType") String docType, @Param("startDate") Date startDate,
+			@Param("dayAfterEndDate") Date dayAfterEndDate, @Param("limit") int limit, @Param("offset") int offset);
 }
@@ -0,0 +1,46 @@
+package it.akademija.dao;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Documents used to take their ids from the shared hibernate_sequence. The
+ * base migration creates document_seq starting at 1, so on existing databases
+ * it is moved past the highest document id before the first insert.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class DocumentSequenceAlignment {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DocumentSequenceAlignment.class);
+
+	private final JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	public DocumentSequenceAlignment(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@PostConstruct
+	public void alignDocumentSequence() {
+		Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM document", Long.class);
+		if (maxId == null) {
+			return;
+		}
+		Long nextValue = jdbcTemplate.queryForObject(
+				"SELECT CURRENT_VALUE + INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'DOCUMENT_SEQ'",
+				Long.class);
+		if (nextValue != null && nextValue > maxId) {
+			return;
+		}
+		jdbcTemplate.execute("ALTER SEQUENCE document_seq RESTART WITH " + (maxId + 1));
+		LOGGER.info("Moved document_seq past existing document id {}", maxId);
+	}
+
+}
@@ -0,0 +1,150 @@
+package it.akademija.dao;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import it.akademija.model.document.StatisticsBucket;
+
+/**
+ * Daily document counts per doc type and status, keyed by the day the
+ * document was submitted. Callers keep them in step with the documents inside
+ * the same transaction, drafts are never counted.
+ */
+@Repository
+public class DocumentStatisticsRepository {
+
+	private final JdbcTemplate jdbcTemplate;
+	private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	@Autowired
+	public DocumentStatisticsRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+	}
+
+	public void add(String docType, Date submissionDate, String status, long delta) {
+		java.sql.Date day = toDay(submissionDate);
+		if (increment(docType, day, status, delta) > 0) {
+			return;
+		}
+		try {
+			jdbcTemplate.update(
+					"INSERT INTO document_daily_stats (doc_type, submission_day, status, document_count) VALUES (?, ?, ?, ?)",
+					docType, day, status, delta);
+		} catch (DuplicateKeyException ex) {
+			// the first document of the day was counted concurrently
+			increment(docType, day, status, delta);
+		}
+	}
+
+	public Map<String, Long> countByStatus(String docType, Date startDate, Date endDate) {
+		Map<String, Long> counts = new HashMap<>();
+		jdbcTemplate.query(
+				"SELECT status, SUM(document_count) FROM document_daily_stats WHERE doc_type = ? AND submission_day BETWEEN ? AND ? GROUP BY status",
+				rs -> {
+					counts.put(rs.getString(1), rs.getLong(2));
+				}, docType, toDay(startDate), toDay(endDate));
+		return counts;
+	}
+
+	/**
+	 * Counts of all given doc types in one grouped read, as doc type, status
+	 * and count rows.
+	 */
+	public void countByDocTypeAndStatus(Collection<String> docTypes, Date startDate, Date endDate,
+			RowCallbackHandler handler) {
+		namedParameterJdbcTemplate.query(
+				"SELECT doc_type, status, SUM(document_count) FROM document_daily_stats WHERE doc_type IN (:docTypes) AND submission_day BETWEEN :startDate AND :endDate GROUP BY doc_type, status",
+				rangeOf(docTypes, startDate, endDate), handler);
+	}
+
+	/**
+	 * The first authors of each given doc type by submitted documents, as doc
+	 * type, author and count rows. Counts are grouped once and ranked per doc
+	 * type, equal counts are ordered by author like the single doc type list.
+	 */
+	public void findTopAuthorsByDocType(Collection<String> docTypes, Date startDate, Date endDate, int limit,
+			RowCallbackHandler handler) {
+		MapSqlParameterSource parameters = rangeOf(docTypes, startDate, endDate).addValue("limit", limit);
+		namedParameterJdbcTemplate.query("SELECT doc_type, author, submitted FROM ("
+				+ "SELECT doc_type, author, submitted, ROW_NUMBER() OVER (PARTITION BY doc_type ORDER BY submitted DESC, author ASC) AS author_rank FROM ("
+				+ "SELECT d.doc_type, d.author, COUNT(*) AS submitted FROM document d WHERE d.doc_type IN (:docTypes) AND d.status <> 'SAVED' AND d.submission_date >= :startDate AND d.submission_date < :dayAfterEndDate GROUP BY d.doc_type, d.author"
+				+ ") counted) ranked WHERE author_rank <= :limit ORDER BY doc_type, author_rank", parameters, handler);
+	}
+
+	/**
+	 * Submitted, approved and rejected counts of a doc type per bucket, as
+	 * bucket start, status and count rows, summed up from the daily rows.
+	 */
+	public void countByBucketAndStatus(String docType, Date startDate, Date endDate, StatisticsBucket bucket,
+			RowCallbackHandler handler) {
+		String bucketStart = bucketStart("submission_day", bucket);
+		namedParameterJdbcTemplate.query("SELECT " + bucketStart + ", status, SUM(document_count) FROM document_daily_stats"
+				+ " WHERE doc_type = :docType AND submission_day BETWEEN :startDate AND :endDate GROUP BY " + bucketStart
+				+ ", status", rangeOf(Collections.singleton(docType), startDate, endDate).addValue("docType", docType),
+				handler);
+	}
+
+	/**
+	 * Review latency of a doc type per bucket of submission, as bucket start,
+	 * reviewed count and the median, 90th and 99th percentile in seconds.
+	 */
+	public void findReviewLatencyByBucket(String docType, Date startDate, Date endDate, StatisticsBucket bucket,
+			RowCallbackHandler handler) {
+		String bucketStart = bucketStart("d.submission_date", bucket);
+		String latency = "DATEDIFF('SECOND', d.submission_date, d.review_date)";
+		namedParameterJdbcTemplate.query("SELECT " + bucketStart + ", COUNT(*)"
+				+ ", PERCENTILE_CONT(0.5) WITHIN GROUP (ORDER BY " + latency + ")"
+				+ ", PERCENTILE_CONT(0.9) WITHIN GROUP (ORDER BY " + latency + ")"
+				+ ", PERCENTILE_CONT(0.99) WITHIN GROUP (ORDER BY " + latency + ")"
+				+ " FROM document d WHERE d.doc_type = :docType AND d.status IN ('APPROVED', 'REJECTED')"
+				+ " AND d.review_date IS NOT NULL AND d.submission_date >= :startDate AND d.submission_date < :dayAfterEndDate"
+				+ " GROUP BY " + bucketStart, rangeOf(Collections.singleton(docType), startDate, endDate)
+						.addValue("docType", docType), handler);
+	}
+
+	// first day of the bucket a DATE or TIMESTAMP column falls in
+	private static String bucketStart(String column, StatisticsBucket bucket) {
+		switch (bucket) {
+		case WEEK:
+			return "DATEADD('DAY', 1 - ISO_DAY_OF_WEEK(" + column + "), CAST(" + column + " AS DATE))";
+		case MONTH:
+			return "DATEADD('DAY', 1 - DAY_OF_MONTH(" + column + "), CAST(" + column + " AS DATE))";
+		default:
+			return "CAST(" + column + " AS DATE)";
+		}
+	}
+
+	// whole days, documents are matched by timestamp up to the end of the last day
+	private static MapSqlParameterSource rangeOf(Collection<String> docTypes, Date startDate, Date endDate) {
+		java.sql.Date lastDay = toDay(endDate);
+		return new MapSqlParameterSource("docTypes", docTypes).addValue("startDate", toDay(startDate))
+				.addValue("endDate", lastDay)
+				.addValue("dayAfterEndDate", java.sql.Date.valueOf(lastDay.toLocalDate().plusDays(1)));
+	}
+
+	private int increment(String docType, java.sql.Date day, String status, long delta) {
+		return jdbcTemplate.update(
+				"UPDATE document_daily_stats SET document_count = document_count + ? WHERE doc_type = ? AND submission_day = ? AND status = ?",
+				delta, docType, day, status);
+	}
+
+	private static java.sql.Date toDay(Date date) {
+		// java.sql.Date does not support toInstant()
+		return java.sql.Date.valueOf(Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate());
+	}
+
+}
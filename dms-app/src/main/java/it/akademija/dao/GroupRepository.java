@@ -3,6 +3,7 @@ package it.akademija.dao;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import it.akademija.model.group.Group;
 
@@ -13,4 +14,7 @@ public interface GroupRepository extends JpaRepository<Group, Long>   {
 	void deleteById(String groupName);
 	void deleteByComment (String comment);
 	List<Group> findByIdContainingIgnoreCase(String groupText);
+
+	@Query("SELECT g.id FROM Group g ORDER BY g.createDate DESC")
+	List<String> findAllGroupNames();
 }
@@ -1,8 +1,11 @@
 package it.akademija.dao;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import it.akademija.model.role.Role;
+import it.akademija.model.role.RoleForClient;
 
 public interface RoleRepository extends JpaRepository<Role, Long>  {
 	
@@ -10,5 +13,8 @@ public interface RoleRepository extends JpaRepository<Role, Long>  {
 	void deleteById(String roleName);
 	void deleteByComment (String comment);
 
+	@Query("SELECT new it.akademija.model.role.RoleForClient(r.id, r.comment) FROM Role r WHERE r.id = :id")
+	RoleForClient findRoleForClientById(@Param("id") String roleName);
+
 	
 }
\ No newline at end of file
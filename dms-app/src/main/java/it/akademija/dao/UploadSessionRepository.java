@@ -0,0 +1,16 @@
+package it.akademija.dao;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import it.akademija.model.file.UploadSession;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+	List<UploadSession> findByLastUpdateBefore(Date date);
+
+}
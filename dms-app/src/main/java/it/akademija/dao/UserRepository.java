@@ -3,22 +3,31 @@ package it.akademija.dao;
 import java.util.List;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import it.akademija.model.user.User;
 
 public interface UserRepository extends JpaRepository<User, Long>  {
 	
 	List<User> findAllByOrderByIdDesc();
-	List<User> findAllByOrderByIdDesc(Pageable pageable);
+	Slice<User> findAllByOrderByIdDesc(Pageable pageable);
 	
 	User findByUsername (String username);
 	void deleteByComment (String comment);
 	List<User> findByUsernameContainingIgnoreCase(String username);
 	List<User> findByUsernameContainingIgnoreCaseOrFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String username, String firstName, String lastName);
-	List<User> findByUsernameContainingIgnoreCaseOrFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String username, String firstName, String lastName, Pageable pageable);
+	Slice<User> findByUsernameContainingIgnoreCaseOrFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String username, String firstName, String lastName, Pageable pageable);
 
 	long countByUsernameContainingIgnoreCaseOrFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String username, String firstName, String lastName);
 	long count();  
 
+	@Query("SELECT COUNT(u) > 0 FROM User u JOIN u.groups g JOIN g.docTypesForApproval t WHERE u.username = :username AND t.id = :docType")
+	boolean canApprove(@Param("username") String username, @Param("docType") String docType);
+
+	@Query("SELECT u.username FROM User u ORDER BY u.id DESC")
+	List<String> findAllUsernames();
+
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package it.akademija.file.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of one cache, serialized as they are for the cache statistics
+ * endpoint.
+ */
+public class CacheStats {
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong admissions = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private volatile long entries;
+	private volatile long bytes;
+
+	public void hit() {
+		hits.incrementAndGet();
+	}
+
+	public void miss() {
+		misses.incrementAndGet();
+	}
+
+	public void admitted() {
+		admissions.incrementAndGet();
+	}
+
+	public void evicted() {
+		evictions.incrementAndGet();
+	}
+
+	public void size(long entries, long bytes) {
+		this.entries = entries;
+		this.bytes = bytes;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public double getHitRatio() {
+		long hits = getHits();
+		long total = hits + getMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public long getAdmissions() {
+		return admissions.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getEntries() {
+		return entries;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+}
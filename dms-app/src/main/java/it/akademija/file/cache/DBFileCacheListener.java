@@ -0,0 +1,41 @@
+package it.akademija.file.cache;
+
+import javax.persistence.PostRemove;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import it.akademija.model.file.DBFile;
+
+/**
+ * Drops removed files from the metadata cache, whether they are deleted on
+ * their own or together with their document.
+ */
+@Component
+public class DBFileCacheListener {
+
+	private final FileMetadataCache fileMetadataCache;
+
+	@Autowired
+	public DBFileCacheListener(FileMetadataCache fileMetadataCache) {
+		this.fileMetadataCache = fileMetadataCache;
+	}
+
+	@PostRemove
+	public void fileRemoved(DBFile dbFile) {
+		String fileId = dbFile.getId();
+		fileMetadataCache.evict(fileId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// a reader may have cached the row again before the delete committed
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					fileMetadataCache.evict(fileId);
+				}
+			});
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+package it.akademija.file.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import it.akademija.model.file.DBFileMetadata;
+
+/**
+ * In-memory LRU of file metadata by file id, so repeated downloads of the same
+ * file do not need a database connection. File rows never change after they
+ * are created, only removal has to be propagated, see
+ * {@link DBFileCacheListener}.
+ */
+@Component
+public class FileMetadataCache {
+
+	private final int maxEntries;
+	private final Map<String, DBFileMetadata> entries;
+	private final CacheStats stats = new CacheStats();
+
+	// bumped on every eviction, a load that raced with one is not cached
+	private long generation;
+
+	public FileMetadataCache(@Value("${dms.cache.metadata.max-entries:10000}") int maxEntries) {
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<String, DBFileMetadata>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, DBFileMetadata> eldest) {
+				if (size() > FileMetadataCache.this.maxEntries) {
+					stats.evicted();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public DBFileMetadata get(String fileId, Function<String, DBFileMetadata> loader) {
+		long loadGeneration;
+		synchronized (this) {
+			DBFileMetadata cached = entries.get(fileId);
+			if (cached != null) {
+				stats.hit();
+				return cached;
+			}
+			loadGeneration = generation;
+		}
+		stats.miss();
+		DBFileMetadata loaded = loader.apply(fileId);
+		synchronized (this) {
+			if (loadGeneration == generation && maxEntries > 0) {
+				entries.put(fileId, loaded);
+				stats.size(entries.size(), 0);
+			}
+		}
+		return loaded;
+	}
+
+	public synchronized void evict(String fileId) {
+		generation++;
+		entries.remove(fileId);
+		stats.size(entries.size(), 0);
+	}
+
+	public CacheStats getStats() {
+		return stats;
+	}
+
+}
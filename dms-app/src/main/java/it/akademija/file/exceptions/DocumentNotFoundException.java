@@ -0,0 +1,15 @@
+package it.akademija.file.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class DocumentNotFoundException extends RuntimeException {
+    public DocumentNotFoundException(String message) {
+        super(message);
+    }
+
+    public DocumentNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,15 @@
+package it.akademija.file.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ExportJobRejectedException extends RuntimeException {
+    public ExportJobRejectedException(String message) {
+        super(message);
+    }
+
+    public ExportJobRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
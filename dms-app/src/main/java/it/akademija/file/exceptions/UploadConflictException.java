@@ -0,0 +1,15 @@
+package it.akademija.file.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class UploadConflictException extends RuntimeException {
+    public UploadConflictException(String message) {
+        super(message);
+    }
+
+    public UploadConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
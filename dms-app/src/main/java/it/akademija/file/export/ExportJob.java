@@ -0,0 +1,129 @@
+package it.akademija.file.export;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ExportJob implements ExportProgress {
+
+	public enum Status {
+		QUEUED, RUNNING, READY, FAILED
+	}
+
+	private final String id;
+	private final String username;
+	private final boolean withCsv;
+	private final String requestedBy;
+	private final Date createDate = new Date();
+
+	private volatile Status status = Status.QUEUED;
+	private volatile int totalEntries;
+	private volatile long totalBytes;
+	private final AtomicInteger writtenEntries = new AtomicInteger();
+	private final AtomicLong writtenBytes = new AtomicLong();
+	private volatile Path archive;
+	private volatile Date expiryDate;
+	private volatile String error;
+
+	public ExportJob(String id, String username, boolean withCsv, String requestedBy) {
+		this.id = id;
+		this.username = username;
+		this.withCsv = withCsv;
+		this.requestedBy = requestedBy;
+	}
+
+	@Override
+	public void started(int totalEntries, long totalBytes) {
+		this.totalEntries = totalEntries;
+		this.totalBytes = totalBytes;
+		this.status = Status.RUNNING;
+	}
+
+	@Override
+	public void bytesWritten(long bytes) {
+		writtenBytes.addAndGet(bytes);
+	}
+
+	@Override
+	public void entryWritten() {
+		writtenEntries.incrementAndGet();
+	}
+
+	public void ready(Path archive, Date expiryDate) {
+		this.archive = archive;
+		this.expiryDate = expiryDate;
+		this.status = Status.READY;
+	}
+
+	public void failed(String error, Date expiryDate) {
+		this.error = error;
+		this.expiryDate = expiryDate;
+		this.status = Status.FAILED;
+	}
+
+	public boolean isActive() {
+		return status == Status.QUEUED || status == Status.RUNNING;
+	}
+
+	public boolean isSameExport(String username, boolean withCsv, String requestedBy) {
+		return this.username.equals(username) && this.withCsv == withCsv && this.requestedBy.equals(requestedBy);
+	}
+
+	public boolean isExpired(Date now) {
+		return expiryDate != null && expiryDate.before(now);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public boolean isWithCsv() {
+		return withCsv;
+	}
+
+	public String getRequestedBy() {
+		return requestedBy;
+	}
+
+	public Date getCreateDate() {
+		return createDate;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public int getTotalEntries() {
+		return totalEntries;
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public int getWrittenEntries() {
+		return writtenEntries.get();
+	}
+
+	public long getWrittenBytes() {
+		return writtenBytes.get();
+	}
+
+	public Path getArchive() {
+		return archive;
+	}
+
+	public Date getExpiryDate() {
+		return expiryDate;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+}
@@ -0,0 +1,30 @@
+package it.akademija.file.export;
+
+/**
+ * Progress of an archive as it is written out. Bytes count the uncompressed
+ * content of entries whose size was given up front, the same bytes the total
+ * is made of.
+ */
+public interface ExportProgress {
+
+	ExportProgress NONE = new ExportProgress() {
+		@Override
+		public void started(int totalEntries, long totalBytes) {
+		}
+
+		@Override
+		public void bytesWritten(long bytes) {
+		}
+
+		@Override
+		public void entryWritten() {
+		}
+	};
+
+	void started(int totalEntries, long totalBytes);
+
+	void bytesWritten(long bytes);
+
+	void entryWritten();
+
+}
@@ -0,0 +1,554 @@
+package it.akademija.file.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a ZIP archive to a stream while deflating on a thread pool.
+ *
+ * Entry contents are cut into fixed-size chunks, and each chunk is deflated
+ * independently as a raw deflate block ending on a byte boundary (sync flush),
+ * primed with the last 32 KB of the previous chunk as dictionary. The
+ * concatenated blocks form one valid deflate stream, so chunks of one large
+ * entry and chunks of consecutive small entries are compressed in parallel and
+ * written back in order. At most {@code maxChunksInFlight} chunks are held in
+ * memory at a time. Progress is reported as chunks reach the output stream,
+ * not when they are queued.
+ *
+ * Entries that are already compressed are written with the STORED method,
+ * which needs the CRC up front, so their source is read twice.
+ *
+ * Deflated entries may also be written to a stream without knowing their size,
+ * see {@link #openEntry(String)}. Like all deflated entries they carry their
+ * sizes in a data descriptor, which switches to ZIP64 sizes only if the entry
+ * outgrows 4 GB.
+ *
+ * Not thread safe, all methods must be called from the same thread.
+ */
+public class ParallelZipWriter {
+
+	public interface EntrySource {
+		InputStream open() throws IOException;
+	}
+
+	public static final long UNKNOWN_SIZE = -1;
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+
+	private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	private static final int FLAG_UTF8 = 0x0800;
+	private static final int METHOD_STORED = 0;
+	private static final int METHOD_DEFLATED = 8;
+	private static final int VERSION_DEFLATE = 20;
+	private static final int VERSION_ZIP64 = 45;
+
+	private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+	private static final int ZIP64_ENTRY_LIMIT = 0xFFFF;
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final CountingOutputStream out;
+	private final Executor executor;
+	private final int chunkSize;
+	private final int maxChunksInFlight;
+	private final int level;
+	private final ExportProgress progress;
+
+	private final List<Entry> entries = new ArrayList<>();
+	private final Deque<Segment> pending = new ArrayDeque<>();
+	private int chunksInFlight;
+	private final int dosTime;
+	private final int dosDate;
+
+	public ParallelZipWriter(OutputStream out, Executor executor, int chunkSize, int maxChunksInFlight, int level) {
+		this(out, executor, chunkSize, maxChunksInFlight, level, ExportProgress.NONE);
+	}
+
+	public ParallelZipWriter(OutputStream out, Executor executor, int chunkSize, int maxChunksInFlight, int level,
+			ExportProgress progress) {
+		this.out = new CountingOutputStream(out);
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+		this.maxChunksInFlight = maxChunksInFlight;
+		this.level = level;
+		this.progress = progress;
+		LocalDateTime now = LocalDateTime.now();
+		this.dosTime = (now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() >> 1);
+		this.dosDate = ((now.getYear() - 1980) << 9) | (now.getMonthValue() << 5) | now.getDayOfMonth();
+	}
+
+	/**
+	 * @param expectedSize uncompressed size if known, used to decide up front
+	 *                     whether the entry needs ZIP64 sizes, otherwise
+	 *                     {@link #UNKNOWN_SIZE}
+	 * @param compress     false for content that is already compressed
+	 */
+	public void addEntry(String name, long expectedSize, boolean compress, EntrySource source) throws IOException {
+		if (compress) {
+			DeflatingEntryStream entry = startDeflated(name, expectedSize);
+			try (InputStream in = source.open()) {
+				entry.readFrom(in);
+			}
+			entry.close();
+		} else {
+			Entry entry = new Entry(name.getBytes(StandardCharsets.UTF_8), false, expectedSize != UNKNOWN_SIZE);
+			entries.add(entry);
+			addStored(entry, source);
+		}
+	}
+
+	/**
+	 * Starts a deflated entry of unknown size whose content is written to the
+	 * returned stream. Closing the stream ends the entry, which has to happen
+	 * before the next entry is added.
+	 */
+	public OutputStream openEntry(String name) throws IOException {
+		return startDeflated(name, UNKNOWN_SIZE);
+	}
+
+	public void finish() throws IOException {
+		while (!pending.isEmpty()) {
+			writeNextSegment();
+		}
+		long centralDirectoryOffset = out.getCount();
+		for (Entry entry : entries) {
+			writeCentralHeader(entry);
+		}
+		long centralDirectorySize = out.getCount() - centralDirectoryOffset;
+		writeEnd(centralDirectoryOffset, centralDirectorySize);
+		out.flush();
+	}
+
+	/**
+	 * Cancels chunks that are still queued for compression. Used when writing
+	 * fails half way, e.g. because the client went away.
+	 */
+	public void abort() {
+		for (Segment segment : pending) {
+			if (segment.data != null) {
+				segment.data.cancel(false);
+			}
+		}
+		pending.clear();
+	}
+
+	private DeflatingEntryStream startDeflated(String name, long expectedSize) throws IOException {
+		Entry entry = new Entry(name.getBytes(StandardCharsets.UTF_8), true, expectedSize != UNKNOWN_SIZE);
+		entries.add(entry);
+		// deflate can grow incompressible input slightly, leave room for that
+		entry.zip64 = expectedSize != UNKNOWN_SIZE && expectedSize + expectedSize / 100 + BUFFER_SIZE >= ZIP64_LIMIT;
+		enqueue(Segment.start(entry));
+		return new DeflatingEntryStream(entry);
+	}
+
+	private void addStored(Entry entry, EntrySource source) throws IOException {
+		CRC32 crc = new CRC32();
+		long size = 0;
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = source.open()) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+				size += read;
+			}
+		}
+		entry.crc = crc.getValue();
+		entry.size = size;
+		entry.zip64 = size >= ZIP64_LIMIT;
+		enqueue(Segment.start(entry));
+
+		long copied = 0;
+		try (InputStream in = source.open()) {
+			byte[] chunk;
+			while ((chunk = readChunk(in)).length > 0) {
+				copied += chunk.length;
+				enqueue(Segment.chunk(entry, CompletableFuture.completedFuture(chunk), chunk.length));
+			}
+		}
+		if (copied != size) {
+			throw new IOException("Content of " + new String(entry.name, StandardCharsets.UTF_8)
+					+ " changed while it was archived");
+		}
+		enqueue(Segment.end(entry));
+	}
+
+	private byte[] deflate(byte[] input, byte[] dictionary, boolean last) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			if (dictionary != null) {
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(input);
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(input.length / 2 + 64);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int length = deflater.deflate(buffer);
+					compressed.write(buffer, 0, length);
+				}
+			} else {
+				int length;
+				do {
+					length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					compressed.write(buffer, 0, length);
+				} while (length == buffer.length);
+			}
+			return compressed.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private byte[] readChunk(InputStream in) throws IOException {
+		byte[] chunk = new byte[chunkSize];
+		int filled = 0;
+		int read;
+		while (filled < chunkSize && (read = in.read(chunk, filled, chunkSize - filled)) != -1) {
+			filled += read;
+		}
+		return filled == chunkSize ? chunk : Arrays.copyOf(chunk, filled);
+	}
+
+	private void enqueue(Segment segment) throws IOException {
+		pending.addLast(segment);
+		if (segment.data != null) {
+			chunksInFlight++;
+		}
+		while (chunksInFlight > maxChunksInFlight) {
+			writeNextSegment();
+		}
+	}
+
+	private void writeNextSegment() throws IOException {
+		Segment segment = pending.removeFirst();
+		Entry entry = segment.entry;
+		if (segment.data != null) {
+			chunksInFlight--;
+			byte[] bytes = join(segment.data);
+			out.write(bytes);
+			entry.compressedSize += bytes.length;
+			if (entry.sized) {
+				progress.bytesWritten(segment.size);
+			}
+		} else if (segment.start) {
+			entry.offset = out.getCount();
+			writeLocalHeader(entry);
+		} else {
+			if (entry.compress) {
+				writeDataDescriptor(entry);
+			}
+			progress.entryWritten();
+		}
+	}
+
+	private byte[] join(CompletableFuture<byte[]> data) throws IOException {
+		try {
+			return data.join();
+		} catch (CompletionException ex) {
+			throw new IOException("Could not compress archive entry", ex.getCause());
+		}
+	}
+
+	private void writeLocalHeader(Entry entry) throws IOException {
+		ByteBuffer header = buffer(30 + entry.name.length + (entry.zip64 ? 20 : 0));
+		header.putInt(LOCAL_HEADER_SIGNATURE);
+		header.putShort((short) (entry.zip64 ? VERSION_ZIP64 : VERSION_DEFLATE));
+		header.putShort((short) (entry.compress ? FLAG_UTF8 | FLAG_DATA_DESCRIPTOR : FLAG_UTF8));
+		header.putShort((short) (entry.compress ? METHOD_DEFLATED : METHOD_STORED));
+		header.putShort((short) dosTime);
+		header.putShort((short) dosDate);
+		// deflated entries are streamed, their sizes follow in the data descriptor
+		long size = entry.compress ? 0 : entry.size;
+		header.putInt(entry.compress ? 0 : (int) entry.crc);
+		header.putInt(entry.zip64 ? (int) ZIP64_LIMIT : (int) size);
+		header.putInt(entry.zip64 ? (int) ZIP64_LIMIT : (int) size);
+		header.putShort((short) entry.name.length);
+		header.putShort((short) (entry.zip64 ? 20 : 0));
+		header.put(entry.name);
+		if (entry.zip64) {
+			header.putShort((short) 0x0001);
+			header.putShort((short) 16);
+			header.putLong(size);
+			header.putLong(size);
+		}
+		out.write(header.array());
+	}
+
+	private void writeDataDescriptor(Entry entry) throws IOException {
+		// an entry of unknown size only learns here that it needs ZIP64 sizes
+		boolean zip64 = entry.zip64 || entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+		ByteBuffer descriptor = buffer(zip64 ? 24 : 16);
+		descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE);
+		descriptor.putInt((int) entry.crc);
+		if (zip64) {
+			descriptor.putLong(entry.compressedSize);
+			descriptor.putLong(entry.size);
+		} else {
+			descriptor.putInt((int) entry.compressedSize);
+			descriptor.putInt((int) entry.size);
+		}
+		out.write(descriptor.array());
+	}
+
+	private void writeCentralHeader(Entry entry) throws IOException {
+		boolean sizeOverflow = entry.size >= ZIP64_LIMIT;
+		boolean compressedSizeOverflow = entry.compressedSize >= ZIP64_LIMIT;
+		boolean offsetOverflow = entry.offset >= ZIP64_LIMIT;
+		int extraLength = (sizeOverflow || compressedSizeOverflow || offsetOverflow ? 4 : 0)
+				+ (sizeOverflow ? 8 : 0) + (compressedSizeOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+		boolean zip64 = extraLength > 0 || entry.zip64;
+
+		ByteBuffer header = buffer(46 + entry.name.length + extraLength);
+		header.putInt(CENTRAL_HEADER_SIGNATURE);
+		header.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFLATE));
+		header.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFLATE));
+		header.putShort((short) (entry.compress ? FLAG_UTF8 | FLAG_DATA_DESCRIPTOR : FLAG_UTF8));
+		header.putShort((short) (entry.compress ? METHOD_DEFLATED : METHOD_STORED));
+		header.putShort((short) dosTime);
+		header.putShort((short) dosDate);
+		header.putInt((int) entry.crc);
+		header.putInt(compressedSizeOverflow ? (int) ZIP64_LIMIT : (int) entry.compressedSize);
+		header.putInt(sizeOverflow ? (int) ZIP64_LIMIT : (int) entry.size);
+		header.putShort((short) entry.name.length);
+		header.putShort((short) extraLength);
+		header.putShort((short) 0);
+		header.putShort((short) 0);
+		header.putShort((short) 0);
+		header.putInt(0);
+		header.putInt(offsetOverflow ? (int) ZIP64_LIMIT : (int) entry.offset);
+		header.put(entry.name);
+		if (extraLength > 0) {
+			header.putShort((short) 0x0001);
+			header.putShort((short) (extraLength - 4));
+			if (sizeOverflow) {
+				header.putLong(entry.size);
+			}
+			if (compressedSizeOverflow) {
+				header.putLong(entry.compressedSize);
+			}
+			if (offsetOverflow) {
+				header.putLong(entry.offset);
+			}
+		}
+		out.write(header.array());
+	}
+
+	private void writeEnd(long centralDirectoryOffset, long centralDirectorySize) throws IOException {
+		boolean zip64 = entries.size() >= ZIP64_ENTRY_LIMIT || centralDirectoryOffset >= ZIP64_LIMIT
+				|| centralDirectorySize >= ZIP64_LIMIT;
+		if (zip64) {
+			long zip64EndOffset = out.getCount();
+			ByteBuffer end = buffer(56 + 20);
+			end.putInt(ZIP64_END_SIGNATURE);
+			end.putLong(44);
+			end.putShort((short) VERSION_ZIP64);
+			end.putShort((short) VERSION_ZIP64);
+			end.putInt(0);
+			end.putInt(0);
+			end.putLong(entries.size());
+			end.putLong(entries.size());
+			end.putLong(centralDirectorySize);
+			end.putLong(centralDirectoryOffset);
+			end.putInt(ZIP64_LOCATOR_SIGNATURE);
+			end.putInt(0);
+			end.putLong(zip64EndOffset);
+			end.putInt(1);
+			out.write(end.array());
+		}
+		ByteBuffer end = buffer(22);
+		end.putInt(END_SIGNATURE);
+		end.putShort((short) 0);
+		end.putShort((short) 0);
+		end.putShort((short) (zip64 ? ZIP64_ENTRY_LIMIT : entries.size()));
+		end.putShort((short) (zip64 ? ZIP64_ENTRY_LIMIT : entries.size()));
+		end.putInt(zip64 ? (int) ZIP64_LIMIT : (int) centralDirectorySize);
+		end.putInt(zip64 ? (int) ZIP64_LIMIT : (int) centralDirectoryOffset);
+		end.putShort((short) 0);
+		out.write(end.array());
+	}
+
+	private static ByteBuffer buffer(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static class Entry {
+		private final byte[] name;
+		private final boolean compress;
+		// whether its bytes count towards the progress total
+		private final boolean sized;
+		private boolean zip64;
+		private long crc;
+		private long size;
+		private long compressedSize;
+		private long offset;
+
+		private Entry(byte[] name, boolean compress, boolean sized) {
+			this.name = name;
+			this.compress = compress;
+			this.sized = sized;
+		}
+	}
+
+	// Content of a deflated entry, cut into chunks that are compressed on the
+	// pool. A full chunk is held back until more content arrives, since only the
+	// last chunk of the entry finishes the deflate stream
+	private class DeflatingEntryStream extends OutputStream {
+		private final Entry entry;
+		private final CRC32 crc = new CRC32();
+		private long size;
+		private byte[] chunk = new byte[chunkSize];
+		private int filled;
+		private byte[] held;
+		private byte[] dictionary;
+		private boolean closed;
+
+		private DeflatingEntryStream(Entry entry) {
+			this.entry = entry;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int length = Math.min(len, chunkSize - filled);
+				System.arraycopy(b, off, chunk, filled, length);
+				filled += length;
+				off += length;
+				len -= length;
+				if (filled == chunkSize) {
+					chunkFilled();
+				}
+			}
+		}
+
+		// reads straight into the chunk, without going through a buffer
+		private void readFrom(InputStream in) throws IOException {
+			int read;
+			while ((read = in.read(chunk, filled, chunkSize - filled)) != -1) {
+				filled += read;
+				if (filled == chunkSize) {
+					chunkFilled();
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (held == null) {
+				submit(Arrays.copyOf(chunk, filled), true);
+			} else if (filled == 0) {
+				submit(held, true);
+			} else {
+				submit(held, false);
+				submit(Arrays.copyOf(chunk, filled), true);
+			}
+			entry.crc = crc.getValue();
+			entry.size = size;
+			enqueue(Segment.end(entry));
+		}
+
+		private void chunkFilled() throws IOException {
+			if (held != null) {
+				submit(held, false);
+			}
+			held = chunk;
+			chunk = new byte[chunkSize];
+			filled = 0;
+		}
+
+		private void submit(byte[] input, boolean last) throws IOException {
+			crc.update(input, 0, input.length);
+			size += input.length;
+			byte[] previous = dictionary;
+			enqueue(Segment.chunk(entry,
+					CompletableFuture.supplyAsync(() -> deflate(input, previous, last), executor), input.length));
+			dictionary = input.length > DICTIONARY_SIZE
+					? Arrays.copyOfRange(input, input.length - DICTIONARY_SIZE, input.length)
+					: input;
+		}
+	}
+
+	// One unit of output, written strictly in the order it was queued: an entry
+	// header, a (possibly still compressing) chunk of data, or an entry trailer
+	private static class Segment {
+		private final Entry entry;
+		private final boolean start;
+		private final CompletableFuture<byte[]> data;
+		private final int size;
+
+		private Segment(Entry entry, boolean start, CompletableFuture<byte[]> data, int size) {
+			this.entry = entry;
+			this.start = start;
+			this.data = data;
+			this.size = size;
+		}
+
+		private static Segment start(Entry entry) {
+			return new Segment(entry, true, null, 0);
+		}
+
+		// size is the length of the chunk before compression
+		private static Segment chunk(Entry entry, CompletableFuture<byte[]> data, int size) {
+			return new Segment(entry, false, data, size);
+		}
+
+		private static Segment end(Entry entry) {
+			return new Segment(entry, false, null, 0);
+		}
+	}
+
+	private static class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		private long getCount() {
+			return count;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package it.akademija.file.export;
+
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Owns the bounded pool that ZIP exports deflate on. It is not exposed as an
+ * Executor bean, so it does not replace Spring's default task executor.
+ */
+@Component
+public class ZipCompressionPool {
+
+	private static final int CHUNK_SIZE = 1024 * 1024;
+
+	private final ForkJoinPool pool;
+
+	public ZipCompressionPool(@Value("${dms.export.compression-threads:0}") int threads) {
+		// 0 means one thread per available core
+		this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelZipWriter newWriter(OutputStream outputStream, ExportProgress progress) {
+		return new ParallelZipWriter(outputStream, pool, CHUNK_SIZE, 2 * pool.getParallelism(),
+				Deflater.DEFAULT_COMPRESSION, progress);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+}
@@ -0,0 +1,123 @@
+package it.akademija.file.storage;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * Resource view of a stored blob. Every call to {@link #getInputStream()} opens
+ * a fresh stream, so the resource can be split into byte ranges.
+ */
+public class BlobResource extends AbstractResource {
+
+	private final BlobStore blobStore;
+	private final String contentHash;
+	private final long size;
+
+	public BlobResource(BlobStore blobStore, String contentHash, long size) {
+		this.blobStore = blobStore;
+		this.contentHash = contentHash;
+		this.size = size;
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return blobStore.get(contentHash);
+	}
+
+	/**
+	 * Opens a stream over count bytes starting at position. Blobs stored
+	 * compressed are inflated up to the position, so this reads from the start.
+	 */
+	public InputStream getInputStream(long position, long count) throws IOException {
+		InputStream in = getInputStream();
+		try {
+			long skipped = 0;
+			while (skipped < position) {
+				long n = in.skip(position - skipped);
+				if (n <= 0) {
+					if (in.read() < 0) {
+						throw new EOFException(getDescription() + " ends before position " + position);
+					}
+					n = 1;
+				}
+				skipped += n;
+			}
+		} catch (IOException | RuntimeException ex) {
+			in.close();
+			throw ex;
+		}
+		return new RangeInputStream(in, count);
+	}
+
+	@Override
+	public long contentLength() {
+		return size;
+	}
+
+	@Override
+	public boolean exists() {
+		return blobStore.contains(contentHash);
+	}
+
+	@Override
+	public String getDescription() {
+		return "Blob [" + contentHash + "]";
+	}
+
+	// stops after the remaining bytes of the range, closing closes the blob stream
+	private static class RangeInputStream extends FilterInputStream {
+
+		private long remaining;
+
+		RangeInputStream(InputStream in, long count) {
+			super(in);
+			this.remaining = count;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int b = super.read();
+			if (b >= 0) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int n = super.read(b, off, (int) Math.min(len, remaining));
+			if (n > 0) {
+				remaining -= n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(super.available(), remaining);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+
+}
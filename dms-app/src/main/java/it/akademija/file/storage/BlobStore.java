@@ -0,0 +1,72 @@
+package it.akademija.file.storage;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed storage for file payloads. Blobs are keyed by the SHA-256
+ * of their content, so storing the same bytes twice keeps a single copy.
+ *
+ * A blob may be kept compressed. The hash is always taken over the original
+ * content, and {@link #get(String)} returns it decompressed.
+ *
+ * Blobs are never deleted when a file is, another file may share them. They
+ * are reclaimed by the storage sweeper once nothing refers to them.
+ */
+public interface BlobStore {
+
+	String GZIP = "gzip";
+
+	/**
+	 * Streams the payload into the store in fixed-size chunks, hashing it on the
+	 * way. The stream is not closed. If a blob with the same content already
+	 * exists, the new copy is discarded.
+	 *
+	 * @param compress whether to try keeping the blob compressed
+	 */
+	StoredBlob put(InputStream in, boolean compress);
+
+	InputStream get(String contentHash);
+
+	/**
+	 * @return the encoding the blob is kept in, {@link #GZIP} or null if it is
+	 *         kept as is
+	 */
+	String getStoredEncoding(String contentHash);
+
+	InputStream getStored(String contentHash);
+
+	long getStoredSize(String contentHash);
+
+	/**
+	 * @return the local file holding the blob as stored, for handing it to the
+	 *         kernel, or null when the store can not offer one
+	 */
+	Path getStoredPath(String contentHash);
+
+	boolean contains(String contentHash);
+
+	/**
+	 * Marks the blob as used again, so the sweeper grace period starts over,
+	 * as storing the same content again would.
+	 *
+	 * @return false if the blob is not stored
+	 */
+	boolean touch(String contentHash);
+
+	/**
+	 * Lists the hashes of all stored blobs. The stream walks the store lazily
+	 * and has to be closed.
+	 */
+	Stream<String> listContentHashes();
+
+	/**
+	 * Deletes the blob unless it was stored, or stored again, at or after the
+	 * given time. Callers make sure no file refers to it any more.
+	 *
+	 * @return the number of bytes freed, 0 if the blob was kept or is gone
+	 */
+	long deleteIfUnusedSince(String contentHash, long unusedSinceMillis);
+
+}
@@ -0,0 +1,243 @@
+package it.akademija.file.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import it.akademija.file.cache.CacheStats;
+import it.akademija.file.exceptions.FileStorageException;
+
+/**
+ * Keeps decompressed copies of hot compressed blobs on local disk, so popular
+ * attachments are not inflated again on every download or range request.
+ * Plain blobs are already local files and bypass the cache.
+ *
+ * The cache holds at most the configured number of bytes and evicts the least
+ * recently used copies first. A blob is only admitted on its second miss
+ * within the recently seen window, files that are opened once never push out
+ * the ones opened all the time.
+ */
+@Primary
+@Component
+public class CachingBlobStore implements BlobStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CachingBlobStore.class);
+
+	// a single copy may take at most this share of the budget
+	private static final long MAX_ENTRY_DIVISOR = 8;
+
+	private final FileSystemBlobStore delegate;
+	private final Path cacheDir;
+	private final long maxBytes;
+	private final int doorkeeperSize;
+	private final CacheStats stats = new CacheStats();
+
+	// content hash to size of the cached copy, in access order
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, Boolean> recentlySeen;
+	private final Set<String> filling = ConcurrentHashMap.newKeySet();
+	private long usedBytes;
+
+	@Autowired
+	public CachingBlobStore(FileSystemBlobStore delegate, @Value("${dms.cache.blobs.dir}") String cacheDir,
+			@Value("${dms.cache.blobs.max-size:512MB}") DataSize maxSize,
+			@Value("${dms.cache.blobs.doorkeeper-size:4096}") int doorkeeperSize) {
+		this.delegate = delegate;
+		this.cacheDir = Paths.get(cacheDir).toAbsolutePath().normalize();
+		this.maxBytes = maxSize.toBytes();
+		this.doorkeeperSize = doorkeeperSize;
+		this.recentlySeen = new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > CachingBlobStore.this.doorkeeperSize;
+			}
+		};
+		try {
+			Files.createDirectories(this.cacheDir);
+			// the index is kept in memory only, start empty
+			try (Stream<Path> leftovers = Files.list(this.cacheDir)) {
+				leftovers.forEach(CachingBlobStore::deleteQuietly);
+			}
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not prepare blob cache directory " + this.cacheDir, ex);
+		}
+	}
+
+	@Override
+	public StoredBlob put(InputStream in, boolean compress) {
+		return delegate.put(in, compress);
+	}
+
+	@Override
+	public InputStream get(String contentHash) {
+		if (maxBytes <= 0 || !GZIP.equals(delegate.getStoredEncoding(contentHash))) {
+			return delegate.get(contentHash);
+		}
+		if (isCached(contentHash)) {
+			try {
+				InputStream in = Files.newInputStream(cacheFile(contentHash));
+				stats.hit();
+				return in;
+			} catch (IOException ex) {
+				remove(contentHash);
+			}
+		}
+		stats.miss();
+		if (!admit(contentHash) || !filling.add(contentHash)) {
+			return delegate.get(contentHash);
+		}
+		try {
+			return fill(contentHash);
+		} finally {
+			filling.remove(contentHash);
+		}
+	}
+
+	@Override
+	public String getStoredEncoding(String contentHash) {
+		return delegate.getStoredEncoding(contentHash);
+	}
+
+	@Override
+	public InputStream getStored(String contentHash) {
+		return delegate.getStored(contentHash);
+	}
+
+	@Override
+	public long getStoredSize(String contentHash) {
+		return delegate.getStoredSize(contentHash);
+	}
+
+	@Override
+	public Path getStoredPath(String contentHash) {
+		return delegate.getStoredPath(contentHash);
+	}
+
+	@Override
+	public boolean contains(String contentHash) {
+		return delegate.contains(contentHash);
+	}
+
+	@Override
+	public boolean touch(String contentHash) {
+		return delegate.touch(contentHash);
+	}
+
+	@Override
+	public Stream<String> listContentHashes() {
+		return delegate.listContentHashes();
+	}
+
+	@Override
+	public long deleteIfUnusedSince(String contentHash, long unusedSinceMillis) {
+		long freed = delegate.deleteIfUnusedSince(contentHash, unusedSinceMillis);
+		if (freed > 0) {
+			remove(contentHash);
+			deleteQuietly(cacheFile(contentHash));
+		}
+		return freed;
+	}
+
+	public CacheStats getStats() {
+		return stats;
+	}
+
+	private InputStream fill(String contentHash) {
+		Path tmp = null;
+		try {
+			tmp = Files.createTempFile(cacheDir, contentHash, ".part");
+			long size;
+			try (InputStream in = delegate.get(contentHash)) {
+				size = Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (size > maxBytes / MAX_ENTRY_DIVISOR) {
+				// too large to be worth a slot
+				deleteQuietly(tmp);
+				return delegate.get(contentHash);
+			}
+			Path target = cacheFile(contentHash);
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			InputStream in = Files.newInputStream(target);
+			register(contentHash, size);
+			return in;
+		} catch (IOException ex) {
+			LOGGER.warn("Could not cache blob {}", contentHash, ex);
+			deleteQuietly(tmp);
+			return delegate.get(contentHash);
+		}
+	}
+
+	private synchronized boolean isCached(String contentHash) {
+		return entries.get(contentHash) != null;
+	}
+
+	private synchronized boolean admit(String contentHash) {
+		if (recentlySeen.remove(contentHash) != null) {
+			return true;
+		}
+		recentlySeen.put(contentHash, Boolean.TRUE);
+		return false;
+	}
+
+	private synchronized void register(String contentHash, long size) {
+		Long previous = entries.put(contentHash, size);
+		usedBytes += size - (previous != null ? previous : 0);
+		stats.admitted();
+		for (Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator(); usedBytes > maxBytes
+				&& iterator.hasNext();) {
+			Map.Entry<String, Long> eldest = iterator.next();
+			if (eldest.getKey().equals(contentHash)) {
+				continue;
+			}
+			iterator.remove();
+			usedBytes -= eldest.getValue();
+			// open readers keep their handle, the copy disappears once they are done
+			deleteQuietly(cacheFile(eldest.getKey()));
+			stats.evicted();
+		}
+		stats.size(entries.size(), usedBytes);
+	}
+
+	private synchronized void remove(String contentHash) {
+		Long size = entries.remove(contentHash);
+		if (size != null) {
+			usedBytes -= size;
+			stats.size(entries.size(), usedBytes);
+		}
+	}
+
+	private Path cacheFile(String contentHash) {
+		if (!ContentHashes.isValid(contentHash)) {
+			throw new FileStorageException("Invalid content hash " + contentHash);
+		}
+		return cacheDir.resolve(contentHash);
+	}
+
+	private static void deleteQuietly(Path path) {
+		if (path == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ex) {
+			LOGGER.warn("Could not delete cached blob {}", path, ex);
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package it.akademija.file.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides which uploads are kept compressed in the blob store: text-like
+ * payloads of at least the configured size, when a codec is configured.
+ */
+@Component
+public class CompressionPolicy {
+
+	private final boolean enabled;
+	private final long minSize;
+
+	public CompressionPolicy(@Value("${dms.storage.compression.codec:gzip}") String codec,
+			@Value("${dms.storage.compression.min-size:1024}") long minSize) {
+		if (!BlobStore.GZIP.equals(codec) && !"none".equals(codec)) {
+			throw new IllegalArgumentException("Unsupported storage compression codec " + codec);
+		}
+		this.enabled = BlobStore.GZIP.equals(codec);
+		this.minSize = minSize;
+	}
+
+	public boolean shouldCompress(String fileType, String fileName, long size) {
+		return enabled && size >= minSize && ContentTypes.isCompressible(fileType, fileName);
+	}
+
+}
@@ -0,0 +1,37 @@
+package it.akademija.file.storage;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hashes are lower case hex encoded SHA-256 digests of the original
+ * (uncompressed) bytes.
+ */
+public final class ContentHashes {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private ContentHashes() {
+	}
+
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	public static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+
+	public static boolean isValid(String contentHash) {
+		return contentHash != null && contentHash.matches("[0-9a-f]{64}");
+	}
+}
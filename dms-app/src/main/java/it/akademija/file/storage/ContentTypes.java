@@ -0,0 +1,105 @@
+package it.akademija.file.storage;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+/**
+ * Decides from the MIME type (and the file name as a fallback, browsers often
+ * send application/octet-stream) whether a payload is already compressed, or
+ * is text-like and worth compressing.
+ */
+public final class ContentTypes {
+
+	public static final String DEFAULT_TYPE = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+	private static final Set<String> COMPRESSED_TYPES = new HashSet<>(Arrays.asList("application/pdf",
+			"application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+			"application/x-rar-compressed", "application/vnd.rar", "application/x-bzip2", "application/java-archive",
+			"application/epub+zip", "application/vnd.oasis.opendocument.text",
+			"application/vnd.oasis.opendocument.spreadsheet", "application/vnd.oasis.opendocument.presentation"));
+
+	private static final Set<String> COMPRESSED_PREFIXES = new HashSet<>(
+			Arrays.asList("image/", "audio/", "video/", "application/vnd.openxmlformats-officedocument."));
+
+	private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList("pdf", "zip", "gz", "tgz",
+			"7z", "rar", "bz2", "xz", "jar", "jpg", "jpeg", "png", "gif", "webp", "heic", "mp3", "mp4", "mov", "avi",
+			"docx", "xlsx", "pptx", "odt", "ods", "odp", "epub"));
+
+	private static final Set<String> COMPRESSIBLE_TYPES = new HashSet<>(Arrays.asList("application/json",
+			"application/xml", "application/javascript", "application/rtf", "application/sql", "application/x-ndjson",
+			"application/x-yaml", "application/msword", "application/vnd.ms-excel", "application/vnd.ms-powerpoint",
+			"application/postscript", "image/svg+xml", "image/bmp", "image/tiff"));
+
+	private static final Set<String> COMPRESSIBLE_EXTENSIONS = new HashSet<>(Arrays.asList("txt", "csv", "tsv", "xml",
+			"json", "html", "htm", "rtf", "md", "log", "sql", "yaml", "yml", "doc", "xls", "ppt", "ps", "svg", "bmp",
+			"tif", "tiff"));
+
+	private ContentTypes() {
+	}
+
+	/**
+	 * Returns the type as it is stored and later sent back in Content-Type, the
+	 * default type when the client did not send one, or null when it can not be
+	 * used as a Content-Type (unparsable or a wildcard).
+	 */
+	public static String normalize(String fileType) {
+		if (!StringUtils.hasText(fileType)) {
+			return DEFAULT_TYPE;
+		}
+		try {
+			MediaType mediaType = MediaType.parseMediaType(fileType);
+			return mediaType.isConcrete() ? mediaType.toString() : null;
+		} catch (InvalidMediaTypeException ex) {
+			return null;
+		}
+	}
+
+	public static boolean isCompressed(String fileType, String fileName) {
+		String type = baseType(fileType);
+		if (COMPRESSED_TYPES.contains(type)) {
+			return true;
+		}
+		for (String prefix : COMPRESSED_PREFIXES) {
+			// SVG, BMP and TIFF are images that usually still compress well
+			if (type.startsWith(prefix) && !type.equals("image/svg+xml") && !type.equals("image/bmp")
+					&& !type.equals("image/tiff")) {
+				return true;
+			}
+		}
+		return COMPRESSED_EXTENSIONS.contains(extension(fileName));
+	}
+
+	public static boolean isCompressible(String fileType, String fileName) {
+		if (isCompressed(fileType, fileName)) {
+			return false;
+		}
+		String type = baseType(fileType);
+		if (type.startsWith("text/") || type.endsWith("+xml") || type.endsWith("+json")
+				|| COMPRESSIBLE_TYPES.contains(type)) {
+			return true;
+		}
+		return COMPRESSIBLE_EXTENSIONS.contains(extension(fileName));
+	}
+
+	static String baseType(String fileType) {
+		if (fileType == null) {
+			return "";
+		}
+		int parameters = fileType.indexOf(';');
+		return (parameters >= 0 ? fileType.substring(0, parameters) : fileType).trim().toLowerCase(Locale.ROOT);
+	}
+
+	static String extension(String fileName) {
+		if (fileName == null) {
+			return "";
+		}
+		int dot = fileName.lastIndexOf('.');
+		return dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+	}
+}
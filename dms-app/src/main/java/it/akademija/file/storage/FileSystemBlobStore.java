@@ -0,0 +1,264 @@
+package it.akademija.file.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import it.akademija.file.exceptions.FileStorageException;
+import it.akademija.file.exceptions.MyFileNotFoundException;
+
+/**
+ * Keeps blobs on the local file system, sharded by the first two bytes of the
+ * hash (root/ab/cd/abcd...), so no directory grows too large. Compressed blobs
+ * carry a .gz suffix next to where the plain file would be.
+ */
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final String GZIP_SUFFIX = ".gz";
+
+	// compressed copies are kept only when they save at least 1/10 of the size
+	private static final long MIN_SAVINGS_DIVISOR = 10;
+
+	// one lock per first byte of the hash, shared by blobs that start alike
+	private static final int LOCK_STRIPES = 256;
+
+	private final Path root;
+
+	// Storing, touching and deleting a blob hold its lock, so the sweeper can't
+	// delete a blob between its age check and a new upload of the same content
+	private final Object[] locks = new Object[LOCK_STRIPES];
+
+	public FileSystemBlobStore(@Value("${dms.storage.blob-root}") String root) {
+		this.root = Paths.get(root).toAbsolutePath().normalize();
+		try {
+			Files.createDirectories(this.root.resolve("tmp"));
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not create blob storage directory " + this.root, ex);
+		}
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	@Override
+	public StoredBlob put(InputStream in, boolean compress) {
+		Path tmp = null;
+		Path plain = null;
+		try {
+			tmp = Files.createTempFile(root.resolve("tmp"), "upload", ".part");
+			MessageDigest digest = ContentHashes.newDigest();
+			long size = 0;
+			byte[] buffer = new byte[BUFFER_SIZE];
+			try (OutputStream file = Files.newOutputStream(tmp);
+					OutputStream out = compress ? new GZIPOutputStream(file, BUFFER_SIZE) : file) {
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+					out.write(buffer, 0, read);
+					size += read;
+				}
+			}
+			String contentHash = ContentHashes.toHex(digest.digest());
+			if (touch(contentHash)) {
+				return new StoredBlob(contentHash, size);
+			}
+
+			Path target = resolve(contentHash);
+			if (compress && Files.size(tmp) > size - size / MIN_SAVINGS_DIVISOR) {
+				// not worth decompressing on every read, keep it as is
+				plain = Files.createTempFile(root.resolve("tmp"), "upload", ".part");
+				try (InputStream compressed = new GZIPInputStream(Files.newInputStream(tmp), BUFFER_SIZE)) {
+					Files.copy(compressed, plain, StandardCopyOption.REPLACE_EXISTING);
+				}
+				touchOrMoveIntoPlace(contentHash, plain, target);
+			} else {
+				touchOrMoveIntoPlace(contentHash, tmp, compress ? gzipped(target) : target);
+			}
+			return new StoredBlob(contentHash, size);
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not store blob", ex);
+		} finally {
+			deleteQuietly(tmp);
+			deleteQuietly(plain);
+		}
+	}
+
+	@Override
+	public InputStream get(String contentHash) {
+		try {
+			Path path = existing(contentHash);
+			InputStream in = Files.newInputStream(path);
+			return isGzipped(path) ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not read blob " + contentHash, ex);
+		}
+	}
+
+	@Override
+	public String getStoredEncoding(String contentHash) {
+		return isGzipped(existing(contentHash)) ? GZIP : null;
+	}
+
+	@Override
+	public InputStream getStored(String contentHash) {
+		try {
+			return Files.newInputStream(existing(contentHash));
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not read blob " + contentHash, ex);
+		}
+	}
+
+	@Override
+	public long getStoredSize(String contentHash) {
+		try {
+			return Files.size(existing(contentHash));
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not read blob " + contentHash, ex);
+		}
+	}
+
+	@Override
+	public Path getStoredPath(String contentHash) {
+		return existing(contentHash);
+	}
+
+	@Override
+	public boolean contains(String contentHash) {
+		Path path = resolve(contentHash);
+		return Files.exists(path) || Files.exists(gzipped(path));
+	}
+
+	@Override
+	public Stream<String> listContentHashes() {
+		try {
+			// root/ab/cd/<hash>[.gz], the tmp and spool directories do not match
+			return Files.walk(root, 3).filter(path -> root.relativize(path).getNameCount() == 3)
+					.map(path -> {
+						String name = path.getFileName().toString();
+						return isGzipped(path) ? name.substring(0, name.length() - GZIP_SUFFIX.length()) : name;
+					}).filter(ContentHashes::isValid).distinct();
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not list blobs in " + root, ex);
+		}
+	}
+
+	@Override
+	public long deleteIfUnusedSince(String contentHash, long unusedSinceMillis) {
+		Path path = resolve(contentHash);
+		long freed = 0;
+		synchronized (lockFor(contentHash)) {
+			for (Path candidate : new Path[] { path, gzipped(path) }) {
+				try {
+					if (Files.getLastModifiedTime(candidate).toMillis() >= unusedSinceMillis) {
+						continue;
+					}
+					long size = Files.size(candidate);
+					Files.delete(candidate);
+					freed += size;
+				} catch (NoSuchFileException ex) {
+					// never stored in this form, or already deleted
+				} catch (IOException ex) {
+					throw new FileStorageException("Could not delete blob " + contentHash, ex);
+				}
+			}
+		}
+		return freed;
+	}
+
+	@Override
+	public boolean touch(String contentHash) {
+		Path path = resolve(contentHash);
+		FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+		synchronized (lockFor(contentHash)) {
+			for (Path candidate : new Path[] { path, gzipped(path) }) {
+				try {
+					Files.setLastModifiedTime(candidate, now);
+					return true;
+				} catch (NoSuchFileException ex) {
+					// not stored in this form
+				} catch (IOException ex) {
+					throw new FileStorageException("Could not touch blob " + contentHash, ex);
+				}
+			}
+		}
+		return false;
+	}
+
+	// The same content may have been stored, in either form, while this copy
+	// was prepared. It is kept then and only marked as used again
+	private void touchOrMoveIntoPlace(String contentHash, Path source, Path target) throws IOException {
+		synchronized (lockFor(contentHash)) {
+			if (!touch(contentHash)) {
+				moveIntoPlace(source, target);
+			}
+		}
+	}
+
+	private Object lockFor(String contentHash) {
+		return locks[Integer.parseInt(contentHash.substring(0, 2), 16)];
+	}
+
+	private void moveIntoPlace(Path source, Path target) throws IOException {
+		Files.createDirectories(target.getParent());
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (FileAlreadyExistsException ex) {
+			// stored concurrently by another upload of the same content
+		}
+	}
+
+	private Path existing(String contentHash) {
+		Path path = resolve(contentHash);
+		if (Files.exists(path)) {
+			return path;
+		}
+		Path gzipped = gzipped(path);
+		if (Files.exists(gzipped)) {
+			return gzipped;
+		}
+		throw new MyFileNotFoundException("Blob not found " + contentHash);
+	}
+
+	private static Path gzipped(Path path) {
+		return path.resolveSibling(path.getFileName() + GZIP_SUFFIX);
+	}
+
+	private static boolean isGzipped(Path path) {
+		return path.getFileName().toString().endsWith(GZIP_SUFFIX);
+	}
+
+	private Path resolve(String contentHash) {
+		if (!ContentHashes.isValid(contentHash)) {
+			throw new FileStorageException("Invalid content hash " + contentHash);
+		}
+		return root.resolve(contentHash.substring(0, 2)).resolve(contentHash.substring(2, 4)).resolve(contentHash);
+	}
+
+	private static void deleteQuietly(Path path) {
+		if (path == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ex) {
+			// leftover parts in tmp are harmless
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package it.akademija.file.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves payloads of files stored before the blob store was introduced out of
+ * the old files.data column, streaming one row at a time, and drops the column
+ * when done.
+ * <p>
+ * Runs once all singletons (and with them the Flyway migrations) are ready but
+ * before the embedded web server starts accepting requests, so no download can
+ * see a legacy row that has no content hash yet. Startup waits for the move.
+ */
+@Component
+public class LegacyFileDataMigration implements SmartInitializingSingleton {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LegacyFileDataMigration.class);
+
+	private final JdbcTemplate jdbcTemplate;
+	private final BlobStore blobStore;
+	private final CompressionPolicy compressionPolicy;
+
+	@Autowired
+	public LegacyFileDataMigration(JdbcTemplate jdbcTemplate, BlobStore blobStore,
+			CompressionPolicy compressionPolicy) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.blobStore = blobStore;
+		this.compressionPolicy = compressionPolicy;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		Integer legacyColumns = jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'FILES' AND COLUMN_NAME = 'DATA'",
+				Integer.class);
+		if (legacyColumns == null || legacyColumns == 0) {
+			return;
+		}
+
+		List<String> ids = jdbcTemplate.queryForList("SELECT id FROM files WHERE content_hash IS NULL", String.class);
+		for (String id : ids) {
+			StoredBlob blob = jdbcTemplate.query(
+					"SELECT data, file_type, file_name, LENGTH(data) FROM files WHERE id = ?",
+					(ResultSetExtractor<StoredBlob>) rs -> {
+						rs.next();
+						InputStream in = rs.getBinaryStream(1);
+						if (in == null) {
+							in = new ByteArrayInputStream(new byte[0]);
+						}
+						boolean compress = compressionPolicy.shouldCompress(rs.getString(2), rs.getString(3),
+								rs.getLong(4));
+						try {
+							return blobStore.put(in, compress);
+						} finally {
+							closeQuietly(in);
+						}
+					}, id);
+			jdbcTemplate.update("UPDATE files SET content_hash = ?, file_size = ?, data = NULL WHERE id = ?",
+					blob.getContentHash(), blob.getSize(), id);
+		}
+		jdbcTemplate.execute("ALTER TABLE files DROP COLUMN data");
+		LOGGER.info("Moved {} legacy file payloads to the blob store", ids.size());
+	}
+
+	private static void closeQuietly(InputStream in) {
+		try {
+			in.close();
+		} catch (IOException ex) {
+			LOGGER.warn("Could not close legacy file data stream", ex);
+		}
+	}
+}
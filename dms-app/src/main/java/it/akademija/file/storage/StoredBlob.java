@@ -0,0 +1,21 @@
+package it.akademija.file.storage;
+
+public class StoredBlob {
+
+	private final String contentHash;
+	private final long size;
+
+	public StoredBlob(String contentHash, long size) {
+		this.contentHash = contentHash;
+		this.size = size;
+	}
+
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+}
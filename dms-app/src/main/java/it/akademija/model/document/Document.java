@@ -9,9 +9,11 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
-import javax.persistence.Transient;
+
+import org.hibernate.annotations.BatchSize;
 
 import it.akademija.model.file.DBFile;
 
@@ -19,34 +21,30 @@ import it.akademija.model.file.DBFile;
 public class Document {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_seq")
+	@SequenceGenerator(name = "document_seq", sequenceName = "document_seq", allocationSize = 50)
 	private Long id;
 	private String author;
 	private String docType;
 	private String title;
 	private String description;
-	@Temporal(TemporalType.DATE)
+	@Temporal(TemporalType.TIMESTAMP)
 	private Date submissionDate;
-	@Temporal(TemporalType.DATE)
+	@Temporal(TemporalType.TIMESTAMP)
 	private Date reviewDate;
 	private String documentReceiver;
 	private String rejectionReason;
 	private String status;
 
+	// list pages map every row to its file ids and names, this loads the files
+	// of all documents on the page in one query instead of one per document
 	@OneToMany(mappedBy = "document", cascade = { CascadeType.ALL })
+	@BatchSize(size = 100)
 	private List<DBFile> DBfiles = new ArrayList<DBFile>();
 
-	@Transient
-	private Long authorSubmittedDocuments;
-
 	public Document() {
 	}
 
-	public Document(Long authorSubmittedDocuments, String author) {
-		this.authorSubmittedDocuments = authorSubmittedDocuments;
-		this.author = author;
-	}
-
 	public Document(Long id, String author, String docType, String title, String description, Date submissionDate,
 			Date reviewDate, String documentReceiver, String rejectionReason, String status) {
 		this.id = id;
@@ -154,14 +152,6 @@ public class Document {
 		file.setDocument(this);
 	}
 	
-	public Long getAuthorSubmittedDocuments() {
-		return authorSubmittedDocuments;
-	}
-
-	public void setAuthorSubmittedDocuments(Long authorSubmittedDocuments) {
-		this.authorSubmittedDocuments = authorSubmittedDocuments;
-	}
-
 	public List<String> generateDbFileIDs() {
 		List<String> dbFilesIds = new ArrayList<String>();
 
@@ -3,6 +3,8 @@ package it.akademija.model.document;
 import java.util.Date;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+
 
 
 public class DocumentForClient {
@@ -12,7 +14,9 @@ public class DocumentForClient {
 	private String docType;
 	private String title;
 	private String description;
+	@JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
 	private Date submissionDate;	
+	@JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
 	private Date reviewDate;
 	private String documentReceiver;
 	private String rejectionReason;
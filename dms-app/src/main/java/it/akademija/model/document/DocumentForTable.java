@@ -3,6 +3,8 @@ package it.akademija.model.document;
 import java.util.Date;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+
 public class DocumentForTable {
 
 	public DocumentForTable() {
@@ -10,7 +12,7 @@ public class DocumentForTable {
 
 	public DocumentForTable(Long id, String author, String docType, String title, String description,
 			Date submissionDate, Date reviewDate, String documentReceiver, String rejectionReason, String status,
-			List<String> dbFileIDs, List<String> documentFileNames, long totalDocuments) {
+			List<String> dbFileIDs, List<String> documentFileNames) {
 
 		this.id = id;
 		this.author = author;
@@ -24,7 +26,6 @@ public class DocumentForTable {
 		this.status = status;
 		this.dbFileIDs = dbFileIDs;
 		this.documentFileNames = documentFileNames;
-		this.totalDocuments = totalDocuments;
 	}
 
 	private Long id;
@@ -32,14 +33,15 @@ public class DocumentForTable {
 	private String docType;
 	private String title;
 	private String description;
+	@JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
 	private Date submissionDate;
+	@JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
 	private Date reviewDate;
 	private String documentReceiver;
 	private String rejectionReason;
 	private String status;
 	private List<String> dbFileIDs;
 	private List<String> documentFileNames;
-	private long totalDocuments;
 
 	public Long getId() {
 		return id;
@@ -137,12 +139,4 @@ public class DocumentForTable {
 		this.documentFileNames = documentFileNames;
 	}
 
-	public long getTotalDocuments() {
-		return totalDocuments;
-	}
-
-	public void setTotalDocuments(long totalDocuments) {
-		this.totalDocuments = totalDocuments;
-	}
-
 }
@@ -0,0 +1,87 @@
+package it.akademija.model.document;
+
+import java.time.LocalDate;
+
+public class DocumentStatisticsBucket {
+
+	private LocalDate start;
+	private Long submittedCount = 0L;
+	private Long approvedCount = 0L;
+	private Long rejectedCount = 0L;
+	private Long reviewedCount = 0L;
+	private Double reviewLatencyMedianSeconds;
+	private Double reviewLatencyP90Seconds;
+	private Double reviewLatencyP99Seconds;
+
+	public DocumentStatisticsBucket() {
+	}
+
+	public DocumentStatisticsBucket(LocalDate start) {
+		this.start = start;
+	}
+
+	public LocalDate getStart() {
+		return start;
+	}
+
+	public void setStart(LocalDate start) {
+		this.start = start;
+	}
+
+	public Long getSubmittedCount() {
+		return submittedCount;
+	}
+
+	public void setSubmittedCount(Long submittedCount) {
+		this.submittedCount = submittedCount;
+	}
+
+	public Long getApprovedCount() {
+		return approvedCount;
+	}
+
+	public void setApprovedCount(Long approvedCount) {
+		this.approvedCount = approvedCount;
+	}
+
+	public Long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	public void setRejectedCount(Long rejectedCount) {
+		this.rejectedCount = rejectedCount;
+	}
+
+	public Long getReviewedCount() {
+		return reviewedCount;
+	}
+
+	public void setReviewedCount(Long reviewedCount) {
+		this.reviewedCount = reviewedCount;
+	}
+
+	public Double getReviewLatencyMedianSeconds() {
+		return reviewLatencyMedianSeconds;
+	}
+
+	public void setReviewLatencyMedianSeconds(Double reviewLatencyMedianSeconds) {
+		this.reviewLatencyMedianSeconds = reviewLatencyMedianSeconds;
+	}
+
+	public Double getReviewLatencyP90Seconds() {
+		return reviewLatencyP90Seconds;
+	}
+
+	public void setReviewLatencyP90Seconds(Double reviewLatencyP90Seconds) {
+		this.reviewLatencyP90Seconds = reviewLatencyP90Seconds;
+	}
+
+	public Double getReviewLatencyP99Seconds() {
+		return reviewLatencyP99Seconds;
+	}
+
+	public void setReviewLatencyP99Seconds(Double reviewLatencyP99Seconds) {
+		this.reviewLatencyP99Seconds = reviewLatencyP99Seconds;
+	}
+
+}
@@ -0,0 +1,61 @@
+package it.akademija.model.document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DocumentStatisticsForDocType {
+
+	private String docType;
+	private Long submittedCount = 0L;
+	private Long rejectedCount = 0L;
+	private Long approvedCount = 0L;
+	private List<DocumentForStatistics> topAuthors = new ArrayList<DocumentForStatistics>();
+
+	public DocumentStatisticsForDocType() {
+	}
+
+	public DocumentStatisticsForDocType(String docType) {
+		this.docType = docType;
+	}
+
+	public String getDocType() {
+		return docType;
+	}
+
+	public void setDocType(String docType) {
+		this.docType = docType;
+	}
+
+	public Long getSubmittedCount() {
+		return submittedCount;
+	}
+
+	public void setSubmittedCount(Long submittedCount) {
+		this.submittedCount = submittedCount;
+	}
+
+	public Long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	public void setRejectedCount(Long rejectedCount) {
+		this.rejectedCount = rejectedCount;
+	}
+
+	public Long getApprovedCount() {
+		return approvedCount;
+	}
+
+	public void setApprovedCount(Long approvedCount) {
+		this.approvedCount = approvedCount;
+	}
+
+	public List<DocumentForStatistics> getTopAuthors() {
+		return topAuthors;
+	}
+
+	public void setTopAuthors(List<DocumentForStatistics> topAuthors) {
+		this.topAuthors = topAuthors;
+	}
+
+}
@@ -0,0 +1,37 @@
+package it.akademija.model.document;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Width of one point in a statistics series. Weeks are ISO weeks and start on
+ * Monday.
+ */
+public enum StatisticsBucket {
+
+	DAY, WEEK, MONTH;
+
+	public LocalDate start(LocalDate day) {
+		switch (this) {
+		case WEEK:
+			return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+		case MONTH:
+			return day.withDayOfMonth(1);
+		default:
+			return day;
+		}
+	}
+
+	public LocalDate next(LocalDate start) {
+		switch (this) {
+		case WEEK:
+			return start.plusWeeks(1);
+		case MONTH:
+			return start.plusMonths(1);
+		default:
+			return start.plusDays(1);
+		}
+	}
+
+}
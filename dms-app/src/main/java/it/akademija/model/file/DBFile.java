@@ -2,12 +2,16 @@ package it.akademija.model.file;
 
 import org.hibernate.annotations.GenericGenerator;
 
+import it.akademija.file.cache.DBFileCacheListener;
 import it.akademija.model.document.Document;
 
+import java.util.Date;
+
 import javax.persistence.*;
 
 @Entity
 @Table(name = "files")
+@EntityListeners(DBFileCacheListener.class)
 public class DBFile {
     @Id
     @GeneratedValue(generator = "uuid")
@@ -18,8 +22,13 @@ public class DBFile {
 
     private String fileType;
 
-    @Lob
-    private byte[] data;
+    @Column(length = 64)
+    private String contentHash;
+
+    private Long fileSize;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createDate;
     
     @ManyToOne( cascade = { CascadeType.MERGE, CascadeType.DETACH })
     @JoinColumn(name = "document_id")
@@ -30,10 +39,12 @@ public class DBFile {
 
     }
 
-    public DBFile(String fileName, String fileType, byte[] data) {
+    public DBFile(String fileName, String fileType, String contentHash, Long fileSize) {
         this.fileName = fileName;
         this.fileType = fileType;
-        this.data = data;
+        this.contentHash = contentHash;
+        this.fileSize = fileSize;
+        this.createDate = new Date();
     }
 
 	public String getId() {
@@ -60,12 +71,28 @@ public class DBFile {
 		this.fileType = fileType;
 	}
 
-	public byte[] getData() {
-		return data;
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
+	public Long getFileSize() {
+		return fileSize;
+	}
+
+	public void setFileSize(Long fileSize) {
+		this.fileSize = fileSize;
+	}
+
+	public Date getCreateDate() {
+		return createDate;
 	}
 
-	public void setData(byte[] data) {
-		this.data = data;
+	public void setCreateDate(Date createDate) {
+		this.createDate = createDate;
 	}
 
 	public Document getDocument() {
@@ -0,0 +1,73 @@
+package it.akademija.model.file;
+
+public class DBFileMetadata {
+
+	private String id;
+	private String fileName;
+	private String fileType;
+	private Long fileSize;
+	private String contentHash;
+	private Long documentId;
+
+	public DBFileMetadata() {
+	}
+
+	public DBFileMetadata(String id, String fileName, String fileType, Long fileSize, String contentHash,
+			Long documentId) {
+		this.id = id;
+		this.fileName = fileName;
+		this.fileType = fileType;
+		this.fileSize = fileSize;
+		this.contentHash = contentHash;
+		this.documentId = documentId;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public String getFileType() {
+		return fileType;
+	}
+
+	public void setFileType(String fileType) {
+		this.fileType = fileType;
+	}
+
+	public Long getFileSize() {
+		return fileSize;
+	}
+
+	public void setFileSize(Long fileSize) {
+		this.fileSize = fileSize;
+	}
+
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
+	public Long getDocumentId() {
+		return documentId;
+	}
+
+	public void setDocumentId(Long documentId) {
+		this.documentId = documentId;
+	}
+
+}
@@ -0,0 +1,116 @@
+package it.akademija.model.file;
+
+import java.util.Date;
+
+import it.akademija.file.export.ExportJob;
+
+public class ExportJobForClient {
+
+	private String id;
+	private String username;
+	private String status;
+	private int totalEntries;
+	private int writtenEntries;
+	private long totalBytes;
+	private long writtenBytes;
+	private Date createDate;
+	private Date expiryDate;
+	private String error;
+
+	public ExportJobForClient() {
+	}
+
+	public ExportJobForClient(ExportJob job) {
+		this.id = job.getId();
+		this.username = job.getUsername();
+		this.status = job.getStatus().name();
+		this.totalEntries = job.getTotalEntries();
+		this.writtenEntries = job.getWrittenEntries();
+		this.totalBytes = job.getTotalBytes();
+		this.writtenBytes = job.getWrittenBytes();
+		this.createDate = job.getCreateDate();
+		this.expiryDate = job.getExpiryDate();
+		this.error = job.getError();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public void setUsername(String username) {
+		this.username = username;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getTotalEntries() {
+		return totalEntries;
+	}
+
+	public void setTotalEntries(int totalEntries) {
+		this.totalEntries = totalEntries;
+	}
+
+	public int getWrittenEntries() {
+		return writtenEntries;
+	}
+
+	public void setWrittenEntries(int writtenEntries) {
+		this.writtenEntries = writtenEntries;
+	}
+
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public void setTotalBytes(long totalBytes) {
+		this.totalBytes = totalBytes;
+	}
+
+	public long getWrittenBytes() {
+		return writtenBytes;
+	}
+
+	public void setWrittenBytes(long writtenBytes) {
+		this.writtenBytes = writtenBytes;
+	}
+
+	public Date getCreateDate() {
+		return createDate;
+	}
+
+	public void setCreateDate(Date createDate) {
+		this.createDate = createDate;
+	}
+
+	public Date getExpiryDate() {
+		return expiryDate;
+	}
+
+	public void setExpiryDate(Date expiryDate) {
+		this.expiryDate = expiryDate;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+}
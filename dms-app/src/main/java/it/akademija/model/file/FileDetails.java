@@ -13,6 +13,12 @@ public class FileDetails {
 		this.fileType = DBFile.getFileType();
 		this.documentId = DBFile.getDocument().getId();
 	}
+	public FileDetails(DBFileMetadata metadata) {
+		this.id = metadata.getId();
+		this.fileName = metadata.getFileName();
+		this.fileType = metadata.getFileType();
+		this.documentId = metadata.getDocumentId();
+	}
 	
 	
 	private String fileType;
@@ -0,0 +1,66 @@
+package it.akademija.model.file;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+/**
+ * A file the client describes by its content instead of sending it. Only the
+ * hash and size are needed to ask which files are known, the name when
+ * attaching a known file to a document. The stored file decides size and
+ * type of the attached file, the type sent here is ignored.
+ */
+public class FileFingerprint {
+
+	@NotBlank
+	private String contentHash;
+
+	@NotNull
+	private Long size;
+
+	private String fileName;
+
+	private String fileType;
+
+	public FileFingerprint() {
+	}
+
+	public FileFingerprint(String contentHash, Long size, String fileName, String fileType) {
+		this.contentHash = contentHash;
+		this.size = size;
+		this.fileName = fileName;
+		this.fileType = fileType;
+	}
+
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
+	public Long getSize() {
+		return size;
+	}
+
+	public void setSize(Long size) {
+		this.size = size;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public String getFileType() {
+		return fileType;
+	}
+
+	public void setFileType(String fileType) {
+		this.fileType = fileType;
+	}
+
+}
@@ -0,0 +1,157 @@
+package it.akademija.model.file;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import org.hibernate.annotations.GenericGenerator;
+
+/**
+ * A chunked upload in progress. Chunks are numbered from zero, chunk n covers
+ * bytes [n * chunkSize, (n + 1) * chunkSize) and they are accepted in order, so
+ * receivedBytes is all the state a client needs to resume.
+ */
+@Entity
+@Table(name = "upload_sessions")
+public class UploadSession {
+
+	@Id
+	@GeneratedValue(generator = "uuid")
+	@GenericGenerator(name = "uuid", strategy = "uuid2")
+	private String id;
+
+	private String username;
+	private Long documentId;
+	private String fileName;
+	private String fileType;
+	private long totalSize;
+	private int chunkSize;
+	private long receivedBytes;
+
+	@Column(length = 64)
+	private String contentHash;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date createDate;
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date lastUpdate;
+
+	public UploadSession() {
+	}
+
+	public UploadSession(String username, Long documentId, String fileName, String fileType, long totalSize,
+			int chunkSize, String contentHash) {
+		this.username = username;
+		this.documentId = documentId;
+		this.fileName = fileName;
+		this.fileType = fileType;
+		this.totalSize = totalSize;
+		this.chunkSize = chunkSize;
+		this.contentHash = contentHash;
+		this.createDate = new Date();
+		this.lastUpdate = this.createDate;
+	}
+
+	public boolean isComplete() {
+		return receivedBytes == totalSize;
+	}
+
+	public int getNextChunk() {
+		return (int) (receivedBytes / chunkSize);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public void setUsername(String username) {
+		this.username = username;
+	}
+
+	public Long getDocumentId() {
+		return documentId;
+	}
+
+	public void setDocumentId(Long documentId) {
+		this.documentId = documentId;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public String getFileType() {
+		return fileType;
+	}
+
+	public void setFileType(String fileType) {
+		this.fileType = fileType;
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	public void setTotalSize(long totalSize) {
+		this.totalSize = totalSize;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public long getReceivedBytes() {
+		return receivedBytes;
+	}
+
+	public void setReceivedBytes(long receivedBytes) {
+		this.receivedBytes = receivedBytes;
+	}
+
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
+	public Date getCreateDate() {
+		return createDate;
+	}
+
+	public void setCreateDate(Date createDate) {
+		this.createDate = createDate;
+	}
+
+	public Date getLastUpdate() {
+		return lastUpdate;
+	}
+
+	public void setLastUpdate(Date lastUpdate) {
+		this.lastUpdate = lastUpdate;
+	}
+
+}
@@ -0,0 +1,104 @@
+package it.akademija.model.file;
+
+import java.util.Date;
+
+public class UploadSessionForClient {
+
+	private String id;
+	private Long documentId;
+	private String fileName;
+	private long totalSize;
+	private int chunkSize;
+	private long receivedBytes;
+	private int nextChunk;
+	private boolean complete;
+	private Date lastUpdate;
+
+	public UploadSessionForClient() {
+	}
+
+	public UploadSessionForClient(UploadSession session) {
+		this.id = session.getId();
+		this.documentId = session.getDocumentId();
+		this.fileName = session.getFileName();
+		this.totalSize = session.getTotalSize();
+		this.chunkSize = session.getChunkSize();
+		this.receivedBytes = session.getReceivedBytes();
+		this.nextChunk = session.getNextChunk();
+		this.complete = session.isComplete();
+		this.lastUpdate = session.getLastUpdate();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public Long getDocumentId() {
+		return documentId;
+	}
+
+	public void setDocumentId(Long documentId) {
+		this.documentId = documentId;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	public void setTotalSize(long totalSize) {
+		this.totalSize = totalSize;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public long getReceivedBytes() {
+		return receivedBytes;
+	}
+
+	public void setReceivedBytes(long receivedBytes) {
+		this.receivedBytes = receivedBytes;
+	}
+
+	public int getNextChunk() {
+		return nextChunk;
+	}
+
+	public void setNextChunk(int nextChunk) {
+		this.nextChunk = nextChunk;
+	}
+
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public void setComplete(boolean complete) {
+		this.complete = complete;
+	}
+
+	public Date getLastUpdate() {
+		return lastUpdate;
+	}
+
+	public void setLastUpdate(Date lastUpdate) {
+		this.lastUpdate = lastUpdate;
+	}
+
+}
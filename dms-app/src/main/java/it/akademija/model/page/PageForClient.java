@@ -0,0 +1,78 @@
+package it.akademija.model.page;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import org.springframework.data.domain.Slice;
+
+/**
+ * One page of a list. The total is counted at most once per request, and not
+ * at all when the client asks to skip it or when the page is the last one.
+ * Keyset pages carry the id to continue after instead of a page number.
+ */
+public class PageForClient<T> {
+
+	private List<T> items;
+	private Long total;
+	private Integer nextPage;
+	private Long nextAfterId;
+
+	public PageForClient() {
+	}
+
+	public PageForClient(List<T> items, Long total, Integer nextPage) {
+		this.items = items;
+		this.total = total;
+		this.nextPage = nextPage;
+	}
+
+	public static <T> PageForClient<T> of(Slice<T> slice, boolean withTotal, LongSupplier count) {
+		Long total = null;
+		if (!slice.hasNext() && (slice.hasContent() || slice.getNumber() == 0)) {
+			// the last page tells the total by itself
+			total = (long) slice.getNumber() * slice.getSize() + slice.getNumberOfElements();
+		} else if (withTotal) {
+			total = count.getAsLong();
+		}
+		return new PageForClient<T>(slice.getContent(), total, slice.hasNext() ? slice.getNumber() + 1 : null);
+	}
+
+	public static <T> PageForClient<T> after(Slice<T> slice, Long nextAfterId, boolean withTotal, LongSupplier count) {
+		PageForClient<T> page = new PageForClient<T>(slice.getContent(), withTotal ? count.getAsLong() : null, null);
+		page.setNextAfterId(nextAfterId);
+		return page;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	public void setItems(List<T> items) {
+		this.items = items;
+	}
+
+	public Long getTotal() {
+		return total;
+	}
+
+	public void setTotal(Long total) {
+		this.total = total;
+	}
+
+	public Integer getNextPage() {
+		return nextPage;
+	}
+
+	public void setNextPage(Integer nextPage) {
+		this.nextPage = nextPage;
+	}
+
+	public Long getNextAfterId() {
+		return nextAfterId;
+	}
+
+	public void setNextAfterId(Long nextAfterId) {
+		this.nextAfterId = nextAfterId;
+	}
+
+}
@@ -10,20 +10,17 @@ public class UserForTable {
 	private String username;
 	private String comment;
 	private List<String> userGroups = new ArrayList<String>();
-	private long totalUsers;
 
 	public UserForTable() {
 	}
 	
-	public UserForTable(String firstName, String lastName, String username, String comment, List<String> userGroups,
-			long totalUsers) {
+	public UserForTable(String firstName, String lastName, String username, String comment, List<String> userGroups) {
 	
 		this.firstName = firstName;
 		this.lastName = lastName;
 		this.username = username;
 		this.comment = comment;
 		this.userGroups = userGroups;
-		this.totalUsers = totalUsers;
 	}
 
 
@@ -79,14 +76,4 @@ public class UserForTable {
 		this.userGroups = userGroups;
 	}
 
-
-	public long getTotalUsers() {
-		return totalUsers;
-	}
-
-
-	public void setTotalUsers(long totalUsers) {
-		this.totalUsers = totalUsers;
-	}
-
 }
@@ -1,8 +1,6 @@
 package it.akademija.service;
 
-import org.apache.tomcat.util.http.fileupload.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -12,34 +10,40 @@ import com.opencsv.CSVWriter;
 
 import it.akademija.dao.DBFileRepository;
 import it.akademija.dao.DocumentRepository;
+import it.akademija.file.cache.CacheStats;
+import it.akademija.file.cache.FileMetadataCache;
 import it.akademija.file.exceptions.FileStorageException;
+import it.akademija.file.export.ExportProgress;
+import it.akademija.file.export.ParallelZipWriter;
+import it.akademija.file.export.ZipCompressionPool;
 import it.akademija.file.exceptions.MyFileNotFoundException;
-import it.akademija.model.document.Document;
+import it.akademija.file.storage.BlobResource;
+import it.akademija.file.storage.BlobStore;
+import it.akademija.file.storage.CachingBlobStore;
+import it.akademija.file.storage.CompressionPolicy;
+import it.akademija.file.storage.ContentTypes;
+import it.akademija.file.storage.StoredBlob;
 import it.akademija.model.document.DocumentForClient;
 import it.akademija.model.file.DBFile;
+import it.akademija.model.file.DBFileMetadata;
 import it.akademija.model.file.DBFileNameAndId;
 import it.akademija.model.file.FileDetails;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 @Service
 public class DBFileStorageService {
@@ -48,13 +52,25 @@ public class DBFileStorageService {
 
 	private final DBFileRepository dbFileRepository;
 	private final DocumentRepository documentRepository;
+	private final BlobStore blobStore;
+	private final ZipCompressionPool zipCompressionPool;
+	private final CompressionPolicy compressionPolicy;
+	private final FileMetadataCache fileMetadataCache;
+	private final CachingBlobStore cachingBlobStore;
 
 	@Autowired
 	public DBFileStorageService(DBFileRepository dbFileRepository, DocumentRepository documentRepository,
-			DocumentService documentService) {
+			DocumentService documentService, BlobStore blobStore, ZipCompressionPool zipCompressionPool,
+			CompressionPolicy compressionPolicy, FileMetadataCache fileMetadataCache,
+			CachingBlobStore cachingBlobStore) {
 		this.dbFileRepository = dbFileRepository;
 		this.documentRepository = documentRepository;
 		this.documentService = documentService;
+		this.blobStore = blobStore;
+		this.zipCompressionPool = zipCompressionPool;
+		this.compressionPolicy = compressionPolicy;
+		this.fileMetadataCache = fileMetadataCache;
+		this.cachingBlobStore = cachingBlobStore;
 	}
 
 	@Transactional
@@ -67,7 +83,12 @@ public class DBFileStorageService {
 				throw new FileStorageException("Sorry! Filename contains invalid path sequence " + fileName);
 			}
 
-			DBFile dbFile = new DBFile(fileName, file.getContentType(), file.getBytes());
+			StoredBlob blob;
+			try (InputStream in = file.getInputStream()) {
+				blob = blobStore.put(in,
+						compressionPolicy.shouldCompress(file.getContentType(), fileName, file.getSize()));
+			}
+			DBFile dbFile = new DBFile(fileName, file.getContentType(), blob.getContentHash(), blob.getSize());
 
 			return dbFileRepository.save(dbFile);
 		} catch (IOException ex) {
@@ -81,9 +102,42 @@ public class DBFileStorageService {
 				.orElseThrow(() -> new MyFileNotFoundException("File not found with id " + fileId));
 	}
 
-	@Transactional
+	// Served from the metadata cache, file rows do not change once created
+	public DBFileMetadata getFileMetadata(String fileId) {
+		return fileMetadataCache.get(fileId, id -> dbFileRepository.findMetadataById(id)
+				.orElseThrow(() -> new MyFileNotFoundException("File not found with id " + id)));
+	}
+
+	public BlobResource getFileResource(DBFileMetadata dbFile) {
+		return new BlobResource(blobStore, dbFile.getContentHash(), dbFile.getFileSize());
+	}
+
+	public String getStoredEncoding(DBFileMetadata dbFile) {
+		return blobStore.getStoredEncoding(dbFile.getContentHash());
+	}
+
+	public InputStream getStoredContent(DBFileMetadata dbFile) {
+		return blobStore.getStored(dbFile.getContentHash());
+	}
+
+	public long getStoredSize(DBFileMetadata dbFile) {
+		return blobStore.getStoredSize(dbFile.getContentHash());
+	}
+
+	public Path getStoredPath(DBFileMetadata dbFile) {
+		return blobStore.getStoredPath(dbFile.getContentHash());
+	}
+
+	public Map<String, CacheStats> getCacheStats() {
+		Map<String, CacheStats> stats = new LinkedHashMap<>();
+		stats.put("fileMetadata", fileMetadataCache.getStats());
+		stats.put("blobs", cachingBlobStore.getStats());
+		return stats;
+	}
+
+	@Transactional(readOnly = true)
 	public List<DBFileNameAndId> getFilesByDocumentId(Long id) {
-		return dbFileRepository.findByDocumentId(id).stream()
+		return dbFileRepository.findMetadataByDocumentId(id).stream()
 				.map((file) -> new DBFileNameAndId(file.getId(), file.getFileName())).collect(Collectors.toList());
 	}
 
@@ -92,18 +146,14 @@ public class DBFileStorageService {
 		dbFileRepository.deleteById(id);
 	}
 
+	@Transactional(readOnly = true)
+	public List<DBFileMetadata> findAllFileMetadataByUsername(String username) {
+		return dbFileRepository.findMetadataByAuthor(username);
+	}
+
+	@Transactional(readOnly = true)
 	public List<FileDetails> findAllFileDetailsByUsername(String username) {
-		List<Document> documentList = documentRepository.findByAuthor(username);
-		Set<DBFile> dbFilesSet = new HashSet<DBFile>();
-		for (Document document : documentList) {
-			List<DBFile> dbFilesList = document.getDBfiles();
-			dbFilesSet.addAll(dbFilesList);
-		}
-		List<FileDetails> fileDetailsList = new ArrayList<FileDetails>();
-		for (DBFile dbFile : dbFilesSet) {
-			fileDetailsList.add(new FileDetails(dbFile));
-		}
-		return fileDetailsList;
+		return findAllFileMetadataByUsername(username).stream().map(FileDetails::new).collect(Collectors.toList());
 	}
 
 	public String formatDate(Date date) {
@@ -115,94 +165,69 @@ public class DBFileStorageService {
 		return dateToString;
 	}
 
-	public File getCsvFile(String username) {
-		File csvFile = new File("/tmp/" +username);
+	public void writeCsv(String username, Writer outputWriter) throws IOException {
 		List<DocumentForClient> documents = documentService.getDocumentsForClientByAuthor(username);
 
-		try {
-			FileWriter outputfile = new FileWriter(csvFile);
-			CSVWriter writer = new CSVWriter(outputfile);
-			String[] header = { "id", "author", "docType", "title", "description", "submissionDate", "reviewDate",
-					"documentReceiver", "rejectionReason", "status", "documentFileNames" };
-			writer.writeNext(header);
-
-			for (DocumentForClient doc : documents) {
-				String[] data = { Long.toString(doc.getId()), doc.getAuthor(), doc.getDocType(), doc.getTitle(),
-						doc.getDescription(), formatDate(doc.getSubmissionDate()), formatDate(doc.getReviewDate()),
-						doc.getDocumentReceiver(), doc.getRejectionReason(), doc.getStatus(), String.join(", ", doc.getDocumentFileNames())};
-				writer.writeNext(data);
-			}
-			writer.close();
-		} catch (IOException e) {
-			e.printStackTrace();
+		// the writer is only flushed, closing it would close the underlying stream
+		CSVWriter writer = new CSVWriter(outputWriter);
+		String[] header = { "id", "author", "docType", "title", "description", "submissionDate", "reviewDate",
+				"documentReceiver", "rejectionReason", "status", "documentFileNames" };
+		writer.writeNext(header);
+
+		for (DocumentForClient doc : documents) {
+			String[] data = { Long.toString(doc.getId()), doc.getAuthor(), doc.getDocType(), doc.getTitle(),
+					doc.getDescription(), formatDate(doc.getSubmissionDate()), formatDate(doc.getReviewDate()),
+					doc.getDocumentReceiver(), doc.getRejectionReason(), doc.getStatus(), String.join(", ", doc.getDocumentFileNames())};
+			writer.writeNext(data);
 		}
-		return csvFile;
+		writer.flush();
 	}
 
-	public Map<String, ByteArrayResource> getAllFilesByUsername(String username) {
-		List<FileDetails> usersFilesDetails = findAllFileDetailsByUsername(username);
-		Map<String, ByteArrayResource> filesAsBytes = new HashMap<>();
-		for (FileDetails file : usersFilesDetails) {
-			filesAsBytes.put(file.getFileName(),
-					new ByteArrayResource(dbFileRepository.findById(file.getId()).get().getData()));
-		}
-		return filesAsBytes;
-	}
-
-	public Map<String, ByteArrayResource> getAllFilesAndCsvByUsername(String username) throws IOException {
-		List<FileDetails> usersFilesDetails = findAllFileDetailsByUsername(username);
-		Map<String, ByteArrayResource> filesAsBytes = new HashMap<>();
-		for (FileDetails file : usersFilesDetails) {
-			
-			String fileName = "DOC_" + Long.toString(file.getDocumentId())+ "_"+ file.getFileName();
-			
-			filesAsBytes.put(fileName,
-					new ByteArrayResource(dbFileRepository.findById(file.getId()).get().getData()));
-		}
+	// Writes the user's files (and optionally the documents CSV) as a ZIP archive
+	// straight to the output stream. Entries are deflated in parallel, content
+	// that is already compressed (PDF, images, office documents) is stored as is.
+	public void zipFiles(String username, boolean withCsv, OutputStream outputStream) throws IOException {
+		zipFiles(username, withCsv, outputStream, ExportProgress.NONE);
+	}
+
+	public void zipFiles(String username, boolean withCsv, OutputStream outputStream, ExportProgress progress)
+			throws IOException {
+		List<DBFileMetadata> usersFiles = findAllFileMetadataByUsername(username);
+		ParallelZipWriter zipWriter = zipCompressionPool.newWriter(outputStream, progress);
+		Set<String> entryNames = new HashSet<>();
+		progress.started(usersFiles.size() + (withCsv ? 1 : 0),
+				usersFiles.stream().mapToLong(DBFileMetadata::getFileSize).sum());
 
-		File file = getCsvFile(username);
-		byte[] csvFileBytesArray = new byte[(int) file.length()];
-		FileInputStream fis;
 		try {
-			fis = new FileInputStream(file);
-			fis.read(csvFileBytesArray);
-			fis.close();
-			
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		}
-		filesAsBytes.put(username + "_documents.csv", new ByteArrayResource(csvFileBytesArray));
-		file.delete();
-		return filesAsBytes;
-	}
-
-	public byte[] zipFiles(Map<String, ByteArrayResource> files) throws IOException {
-
-		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-		BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(byteArrayOutputStream);
-		ZipOutputStream zipOutputStream = new ZipOutputStream(bufferedOutputStream);
-
-		for (Map.Entry<String, ByteArrayResource> entry : files.entrySet()) {
-			File file = new File("/tmp/" + entry.getKey());
-			zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
-			OutputStream out = new FileOutputStream(file);
-			out.write(entry.getValue().getByteArray());
-			FileInputStream fileInputStream = new FileInputStream(file);
-			IOUtils.copy(fileInputStream, zipOutputStream);
-			out.close();
-			fileInputStream.close();
-			zipOutputStream.closeEntry();
-		}
+			for (DBFileMetadata file : usersFiles) {
+				String fileName = withCsv ? "DOC_" + Long.toString(file.getDocumentId()) + "_" + file.getFileName()
+						: file.getFileName();
+				boolean compress = !ContentTypes.isCompressed(file.getFileType(), file.getFileName());
+				zipWriter.addEntry(uniqueEntryName(fileName, entryNames), file.getFileSize(), compress,
+						() -> blobStore.get(file.getContentHash()));
+			}
 
-		if (zipOutputStream != null) {
-			zipOutputStream.finish();
-			zipOutputStream.flush();
-			IOUtils.closeQuietly(zipOutputStream);
-		}
+			if (withCsv) {
+				// written row by row into the entry, its size is only known at the end
+				OutputStream csv = zipWriter.openEntry(uniqueEntryName(username + "_documents.csv", entryNames));
+				writeCsv(username, new OutputStreamWriter(csv, StandardCharsets.UTF_8));
+				csv.close();
+			}
 
-		IOUtils.closeQuietly(bufferedOutputStream);
-		IOUtils.closeQuietly(byteArrayOutputStream);
+			zipWriter.finish();
+		} catch (IOException | RuntimeException ex) {
+			zipWriter.abort();
+			throw ex;
+		}
+	}
 
-		return byteArrayOutputStream.toByteArray();
+	private String uniqueEntryName(String fileName, Set<String> entryNames) {
+		String entryName = fileName;
+		int dot = fileName.lastIndexOf('.');
+		for (int i = 2; !entryNames.add(entryName); i++) {
+			entryName = dot > 0 ? fileName.substring(0, dot) + "_" + i + fileName.substring(dot)
+					: fileName + "_" + i;
+		}
+		return entryName;
 	}
 }
@@ -1,6 +1,5 @@
 package it.akademija.service;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -54,20 +53,19 @@ public class DocTypeService {
 				.collect(Collectors.toList());
 	}
 	
-	@Transactional
+	@Transactional(readOnly = true)
 	public DocTypeForClient getDocTypeNameAndCommentForClient(String docTypeName) {
-		return getDocTypeNamesAndCommentsForClient().stream().filter(docType -> docType.getId().equals(docTypeName)).findFirst()
-				.orElseThrow(() -> new RuntimeException("Can't find group"));
+		DocTypeForClient docType = docTypeRepository.findDocTypeForClientById(docTypeName);
+		if (docType == null) {
+			throw new RuntimeException("Can't find doc type");
+		}
+		return docType;
 	}
 	
 	
 	@Transactional(readOnly = true)
 	public List<String> getAllDocTypeNames() {
-		List<String> allDocTypeNames = new ArrayList<String>();
-		for (int i = 0; i < getDocTypes().size(); i++) {
-			allDocTypeNames.add(getDocTypes().get(i).getId());
-		}
-		return allDocTypeNames;
+		return docTypeRepository.findAllDocTypeNames();
 	}
 	
 	@Transactional
@@ -1,43 +1,88 @@
 package it.akademija.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import it.akademija.dao.DBFileRepository;
 import it.akademija.dao.DocumentRepository;
+import it.akademija.dao.DocumentStatisticsRepository;
+import it.akademija.dao.UserRepository;
+import it.akademija.file.exceptions.DocumentNotFoundException;
 import it.akademija.file.exceptions.FileStorageException;
+import it.akademija.file.exceptions.UploadConflictException;
+import it.akademija.file.storage.BlobStore;
+import it.akademija.file.storage.CompressionPolicy;
+import it.akademija.file.storage.ContentHashes;
+import it.akademija.file.storage.ContentTypes;
+import it.akademija.file.storage.StoredBlob;
 import it.akademija.model.document.Document;
 import it.akademija.model.document.DocumentCountForStatistics;
 import it.akademija.model.document.DocumentForClient;
 import it.akademija.model.document.DocumentForStatistics;
 import it.akademija.model.document.DocumentForTable;
 import it.akademija.model.document.DocumentInfoAfterReview;
+import it.akademija.model.document.DocumentStatisticsBucket;
+import it.akademija.model.document.DocumentStatisticsForDocType;
 import it.akademija.model.document.NewDocument;
+import it.akademija.model.document.StatisticsBucket;
 import it.akademija.model.file.DBFile;
+import it.akademija.model.file.DBFileMetadata;
+import it.akademija.model.file.FileFingerprint;
+import it.akademija.model.page.PageForClient;
 
 @Service
 public class DocumentService {
 
+	private static final int MAX_TOP_AUTHORS = 100;
+
 	private DocumentRepository documentRepository;
 
+	private DBFileRepository dbFileRepository;
+
+	private UserRepository userRepository;
+
+	private DocumentStatisticsRepository documentStatisticsRepository;
+
+	private BlobStore blobStore;
+
+	private CompressionPolicy compressionPolicy;
+
 	@Autowired
-	public DocumentService(DocumentRepository documentRepository) {
+	public DocumentService(DocumentRepository documentRepository, DBFileRepository dbFileRepository,
+			UserRepository userRepository, DocumentStatisticsRepository documentStatisticsRepository,
+			BlobStore blobStore, CompressionPolicy compressionPolicy) {
 		this.documentRepository = documentRepository;
+		this.dbFileRepository = dbFileRepository;
+		this.userRepository = userRepository;
+		this.documentStatisticsRepository = documentStatisticsRepository;
+		this.blobStore = blobStore;
+		this.compressionPolicy = compressionPolicy;
 
 	}
 
 	@Transactional
 	public Document getDocument(Long id) {
-		return getDocuments().stream().filter(document -> document.getId().equals(id)).findFirst()
-				.orElseThrow(() -> new RuntimeException("Can't find document"));
+		return documentRepository.findById(id).orElseThrow(() -> new RuntimeException("Can't find document"));
 	}
 
 	@Transactional(readOnly = true)
@@ -48,21 +93,85 @@ public class DocumentService {
 	@Transactional(readOnly = true)
 	public DocumentCountForStatistics findDocumentCountForStatistics(String docType,  Date startDate,
 			Date endDate) {
+		Map<String, Long> counts = documentStatisticsRepository.countByStatus(docType, startDate, endDate);
 		DocumentCountForStatistics dcfs = new DocumentCountForStatistics();
-		dcfs.setSubmittedCount(
-				documentRepository.countAllSubittedByDocTypeAndDate(docType, startDate, endDate));
-		dcfs.setRejectedCount(
-				documentRepository.countByDocTypeAndStatusAndDate(docType, "REJECTED", startDate, endDate));
-		dcfs.setApprovedCount(
-				documentRepository.countByDocTypeAndStatusAndDate(docType, "APPROVED", startDate, endDate));
+		dcfs.setSubmittedCount(counts.values().stream().mapToLong(Long::longValue).sum());
+		dcfs.setRejectedCount(counts.getOrDefault("REJECTED", 0L));
+		dcfs.setApprovedCount(counts.getOrDefault("APPROVED", 0L));
 		return dcfs;
 	}
 
+	/**
+	 * Counts and top authors of several doc types, in the order asked, with one
+	 * read of the rollup and one ranked read of the documents.
+	 */
+	@Transactional(readOnly = true)
+	public List<DocumentStatisticsForDocType> findStatisticsForDocTypes(List<String> docTypes, Date startDate,
+			Date endDate, int topAuthors) {
+		Map<String, DocumentStatisticsForDocType> statistics = new LinkedHashMap<>();
+		docTypes.forEach(docType -> statistics.put(docType, new DocumentStatisticsForDocType(docType)));
+		if (statistics.isEmpty()) {
+			return new ArrayList<>();
+		}
+		documentStatisticsRepository.countByDocTypeAndStatus(statistics.keySet(), startDate, endDate, rs -> {
+			DocumentStatisticsForDocType forDocType = statistics.get(rs.getString(1));
+			long count = rs.getLong(3);
+			forDocType.setSubmittedCount(forDocType.getSubmittedCount() + count);
+			if ("APPROVED".equals(rs.getString(2))) {
+				forDocType.setApprovedCount(count);
+			} else if ("REJECTED".equals(rs.getString(2))) {
+				forDocType.setRejectedCount(count);
+			}
+		});
+		documentStatisticsRepository.findTopAuthorsByDocType(statistics.keySet(), startDate, endDate,
+				Math.max(1, Math.min(topAuthors, MAX_TOP_AUTHORS)),
+				rs -> statistics.get(rs.getString(1)).getTopAuthors()
+						.add(new DocumentForStatistics(rs.getString(2), rs.getLong(3))));
+		return new ArrayList<>(statistics.values());
+	}
+
+	/**
+	 * Counts and review latency of a doc type for every bucket from the one
+	 * holding startDate to the one holding endDate, empty buckets included.
+	 * Counts come from the daily rollup, latency from one grouped read.
+	 */
+	@Transactional(readOnly = true)
+	public List<DocumentStatisticsBucket> findStatisticsSeries(String docType, Date startDate, Date endDate,
+			StatisticsBucket bucket) {
+		Map<LocalDate, DocumentStatisticsBucket> series = new LinkedHashMap<>();
+		LocalDate lastDay = toLocalDate(endDate);
+		for (LocalDate start = bucket.start(toLocalDate(startDate)); !start.isAfter(lastDay); start = bucket
+				.next(start)) {
+			series.put(start, new DocumentStatisticsBucket(start));
+		}
+		documentStatisticsRepository.countByBucketAndStatus(docType, startDate, endDate, bucket, rs -> {
+			DocumentStatisticsBucket point = series.get(rs.getDate(1).toLocalDate());
+			long count = rs.getLong(3);
+			point.setSubmittedCount(point.getSubmittedCount() + count);
+			if ("APPROVED".equals(rs.getString(2))) {
+				point.setApprovedCount(count);
+			} else if ("REJECTED".equals(rs.getString(2))) {
+				point.setRejectedCount(count);
+			}
+		});
+		documentStatisticsRepository.findReviewLatencyByBucket(docType, startDate, endDate, bucket, rs -> {
+			DocumentStatisticsBucket point = series.get(rs.getDate(1).toLocalDate());
+			point.setReviewedCount(rs.getLong(2));
+			point.setReviewLatencyMedianSeconds(rs.getDouble(3));
+			point.setReviewLatencyP90Seconds(rs.getDouble(4));
+			point.setReviewLatencyP99Seconds(rs.getDouble(5));
+		});
+		return new ArrayList<>(series.values());
+	}
+
 	@Transactional(readOnly = true)
-	public List<DocumentForStatistics> findTopAuthors(String docType, Date startDate, Date endDate, int limit) {
-		return documentRepository.findTopAuthors(docType, startDate, endDate).stream().map(
-				(document) -> new DocumentForStatistics(document.getAuthor(), document.getAuthorSubmittedDocuments()))
-				.limit(limit).collect(Collectors.toList());
+	public List<DocumentForStatistics> findTopAuthors(String docType, Date startDate, Date endDate, int limit,
+			int offset) {
+		return documentRepository
+				.findTopAuthors(docType, startDate, toDate(toLocalDate(endDate).plusDays(1)),
+						Math.max(1, Math.min(limit, MAX_TOP_AUTHORS)), Math.max(0, offset))
+				.stream().map((row) -> new DocumentForStatistics((String) row[0], ((Number) row[1]).longValue()))
+				.collect(Collectors.toList());
 	}
 
 	@Transactional(readOnly = true)
@@ -78,15 +187,12 @@ public class DocumentService {
 	
 	
 	@Transactional(readOnly = true)
-	public List<DocumentForTable> getPageableDocumentsForApprovalByDfaList(List<String> documentForApprovalNames,
-			String status, int page, int size) {
-		Pageable pageable = PageRequest.of(page, size);	
-		return documentRepository.findDocumentsForApproval(documentForApprovalNames, status, pageable).stream()
-				.map((document) -> new DocumentForTable(document.getId(), document.getAuthor(), document.getDocType(),
-						document.getTitle(), document.getDescription(), document.getSubmissionDate(),
-						document.getReviewDate(), document.getDocumentReceiver(), document.getRejectionReason(),
-						document.getStatus(), document.generateDbFileIDs(), document.generateDbFileNames(), documentRepository.countDFA(documentForApprovalNames, status)))
-				.collect(Collectors.toList());
+	public PageForClient<DocumentForTable> getPageableDocumentsForApprovalByDfaList(List<String> documentForApprovalNames,
+			String status, int page, int size, Long afterId, boolean withTotal) {
+		Slice<Document> documents = afterId == null
+				? documentRepository.findDocumentsForApproval(documentForApprovalNames, status, PageRequest.of(page, size))
+				: documentRepository.findDocumentsForApprovalAfter(documentForApprovalNames, status, afterId, PageRequest.of(0, size));
+		return toPage(documents, afterId != null, withTotal, () -> documentRepository.countDFA(documentForApprovalNames, status));
 	}
 	
 	@Transactional(readOnly = true)
@@ -101,15 +207,12 @@ public class DocumentService {
 	}
 	
 	@Transactional(readOnly = true)
-	public List<DocumentForTable> getPageableDocumentsForApprovalByDfaListContaining(List<String> documentForApprovalNames,
-			String status, String titleText, int page, int size) {
-		Pageable pageable = PageRequest.of(page, size);	
-		return documentRepository.findDocumentsForApprovalContaining(documentForApprovalNames, status, titleText, pageable).stream()
-				.map((document) -> new DocumentForTable(document.getId(), document.getAuthor(), document.getDocType(),
-						document.getTitle(), document.getDescription(), document.getSubmissionDate(),
-						document.getReviewDate(), document.getDocumentReceiver(), document.getRejectionReason(),
-						document.getStatus(), document.generateDbFileIDs(), document.generateDbFileNames(), documentRepository.countDFAContaining(documentForApprovalNames, status, titleText)))
-				.collect(Collectors.toList());
+	public PageForClient<DocumentForTable> getPageableDocumentsForApprovalByDfaListContaining(List<String> documentForApprovalNames,
+			String status, String titleText, int page, int size, Long afterId, boolean withTotal) {
+		Slice<Document> documents = afterId == null
+				? documentRepository.findDocumentsForApprovalContaining(documentForApprovalNames, status, titleText, PageRequest.of(page, size))
+				: documentRepository.findDocumentsForApprovalContainingAfter(documentForApprovalNames, status, titleText, afterId, PageRequest.of(0, size));
+		return toPage(documents, afterId != null, withTotal, () -> documentRepository.countDFAContaining(documentForApprovalNames, status, titleText));
 	}
 
 	@Transactional(readOnly = true)
@@ -124,15 +227,12 @@ public class DocumentService {
 	}
 	
 	@Transactional(readOnly = true)
-	public List<DocumentForTable> getPageableDocumentsForApprovalByDfaListAndStatus(List<String> documentForApprovalNames,
-			String status, int page, int size) {
-		Pageable pageable = PageRequest.of(page, size);	
-		return documentRepository.findDocumentsForApprovalByStatus(documentForApprovalNames, status, pageable).stream()
-				.map((document) -> new DocumentForTable(document.getId(), document.getAuthor(), document.getDocType(),
-						document.getTitle(), document.getDescription(), document.getSubmissionDate(),
-						document.getReviewDate(), document.getDocumentReceiver(), document.getRejectionReason(),
-						document.getStatus(), document.generateDbFileIDs(), document.generateDbFileNames(), documentRepository.countDFAByStatus(documentForApprovalNames, status)))
-				.collect(Collectors.toList());
+	public PageForClient<DocumentForTable> getPageableDocumentsForApprovalByDfaListAndStatus(List<String> documentForApprovalNames,
+			String status, int page, int size, Long afterId, boolean withTotal) {
+		Slice<Document> documents = afterId == null
+				? documentRepository.findDocumentsForApprovalByStatus(documentForApprovalNames, status, PageRequest.of(page, size))
+				: documentRepository.findDocumentsForApprovalByStatusAfter(documentForApprovalNames, status, afterId, PageRequest.of(0, size));
+		return toPage(documents, afterId != null, withTotal, () -> documentRepository.countDFAByStatus(documentForApprovalNames, status));
 	}
 
 	@Transactional(readOnly = true)
@@ -146,14 +246,11 @@ public class DocumentService {
 	}
 	
 	@Transactional(readOnly = true)
-	public List<DocumentForTable> getPageableDocumentsForClientByAuthor(String username, int page, int size) {
-		Pageable pageable = PageRequest.of(page, size);	
-		return documentRepository.findByAuthorOrderByIdDesc(username, pageable).stream()
-				.map((document) -> new DocumentForTable(document.getId(), document.getAuthor(), document.getDocType(),
-						document.getTitle(), document.getDescription(), document.getSubmissionDate(),
-						document.getReviewDate(), document.getDocumentReceiver(), document.getRejectionReason(),
-						document.getStatus(), document.generateDbFileIDs(), document.generateDbFileNames(), documentRepository.countByAuthor(username)))
-				.collect(Collectors.toList());
+	public PageForClient<DocumentForTable> getPageableDocumentsForClientByAuthor(String username, int page, int size, Long afterId, boolean withTotal) {
+		Slice<Document> documents = afterId == null
+				? documentRepository.findByAuthorOrderByIdDesc(username, PageRequest.of(page, size))
+				: documentRepository.findByAuthorAndIdLessThanOrderByIdDesc(username, afterId, PageRequest.of(0, size));
+		return toPage(documents, afterId != null, withTotal, () -> documentRepository.countByAuthor(username));
 	}
 	
 	@Transactional(readOnly = true)
@@ -167,14 +264,12 @@ public class DocumentService {
 	}
 	
 	@Transactional(readOnly = true)
-	public List<DocumentForTable> getPageableDocumentsForClientByAuthorContaining(String username, String titleText, int page, int size) {
-		Pageable pageable = PageRequest.of(page, size);	
-		return documentRepository.findByAuthorAndTitleContainingIgnoreCaseOrderByIdDesc(username, titleText, pageable).stream()
-				.map((document) -> new DocumentForTable(document.getId(), document.getAuthor(), document.getDocType(),
-						document.getTitle(), document.getDescription(), document.getSubmissionDate(),
-						document.getReviewDate(), document.getDocumentReceiver(), document.getRejectionReason(),
-						document.getStatus(), document.generateDbFileIDs(), document.generateDbFileNames(), documentRepository.countByAuthorAndTitleContainingIgnoreCase(username, titleText)))
-				.collect(Collectors.toList());
+	public PageForClient<DocumentForTable> getPageableDocumentsForClientByAuthorContaining(String username, String titleText, int page, int size,
+			Long afterId, boolean withTotal) {
+		Slice<Document> documents = afterId == null
+				? documentRepository.findByAuthorAndTitleContainingIgnoreCaseOrderByIdDesc(username, titleText, PageRequest.of(page, size))
+				: documentRepository.findByAuthorAndTitleContainingIgnoreCaseAndIdLessThanOrderByIdDesc(username, titleText, afterId, PageRequest.of(0, size));
+		return toPage(documents, afterId != null, withTotal, () -> documentRepository.countByAuthorAndTitleContainingIgnoreCase(username, titleText));
 	}
 
 	@Transactional(readOnly = true)
@@ -188,30 +283,48 @@ public class DocumentService {
 	}
 	
 	@Transactional(readOnly = true)
-	public List<DocumentForTable> getPageableDocumentsForClientByAuthorAndStatus(String username, String status, int page, int size) {
-		Pageable pageable = PageRequest.of(page, size);	
-		return documentRepository.findByAuthorAndStatusOrderByIdDesc(username, status, pageable).stream()
-				.map((document) -> new DocumentForTable(document.getId(), document.getAuthor(), document.getDocType(),
-						document.getTitle(), document.getDescription(), document.getSubmissionDate(),
-						document.getReviewDate(), document.getDocumentReceiver(), document.getRejectionReason(),
-						document.getStatus(), document.generateDbFileIDs(), document.generateDbFileNames(), documentRepository.countByAuthorAndStatus(username, status)))
-				.collect(Collectors.toList());
+	public PageForClient<DocumentForTable> getPageableDocumentsForClientByAuthorAndStatus(String username, String status, int page, int size,
+			Long afterId, boolean withTotal) {
+		Slice<Document> documents = afterId == null
+				? documentRepository.findByAuthorAndStatusOrderByIdDesc(username, status, PageRequest.of(page, size))
+				: documentRepository.findByAuthorAndStatusAndIdLessThanOrderByIdDesc(username, status, afterId, PageRequest.of(0, size));
+		return toPage(documents, afterId != null, withTotal, () -> documentRepository.countByAuthorAndStatus(username, status));
 	}
 
-	@Transactional
-	public DocumentForClient getDocumentForClientByIdAndUsername(String username, Long id) {
-		return getDocumentsForClientByAuthor(username).stream().filter(document -> document.getId().equals(id))
-				.findFirst().orElseThrow(() -> new RuntimeException("Can't find document"));
+	// page numbers for plain pages, the last id for keyset pages (afterId)
+	private PageForClient<DocumentForTable> toPage(Slice<Document> documents, boolean keyset, boolean withTotal,
+			LongSupplier count) {
+		Slice<DocumentForTable> items = documents.map(this::toDocumentForTable);
+		if (!keyset) {
+			return PageForClient.of(items, withTotal, count);
+		}
+		Long nextAfterId = items.hasNext() ? items.getContent().get(items.getNumberOfElements() - 1).getId() : null;
+		return PageForClient.after(items, nextAfterId, withTotal, count);
 	}
 
-	@Transactional
-	public DocumentForClient getDocumentForClientById(Long id) {
-		Document document = getDocument(id);
-		DocumentForClient documentForClient = new DocumentForClient(document.getId(), document.getAuthor(),
-				document.getDocType(), document.getTitle(), document.getDescription(), document.getSubmissionDate(),
+	private DocumentForTable toDocumentForTable(Document document) {
+		return new DocumentForTable(document.getId(), document.getAuthor(), document.getDocType(),
+				document.getTitle(), document.getDescription(), document.getSubmissionDate(),
+				document.getReviewDate(), document.getDocumentReceiver(), document.getRejectionReason(),
+				document.getStatus(), document.generateDbFileIDs(), document.generateDbFileNames());
+	}
+
+	/**
+	 * Loads the document with its files in one query. The user must be its
+	 * author, or be able to approve its type once it is no longer a draft.
+	 */
+	@Transactional(readOnly = true)
+	public DocumentForClient getDocumentForClientByIdAndUsername(String username, Long id) {
+		Document document = documentRepository.findWithFilesById(id)
+				.orElseThrow(() -> new DocumentNotFoundException("Document not found with id " + id));
+		if (!username.equals(document.getAuthor()) && ("SAVED".equals(document.getStatus())
+				|| !userRepository.canApprove(username, document.getDocType()))) {
+			throw new AccessDeniedException("Document " + id + " is not available to " + username);
+		}
+		return new DocumentForClient(document.getId(), document.getAuthor(), document.getDocType(),
+				document.getTitle(), document.getDescription(), document.getSubmissionDate(),
 				document.getReviewDate(), document.getDocumentReceiver(), document.getRejectionReason(),
 				document.getStatus(), document.generateDbFileIDs(), document.generateDbFileNames());
-		return documentForClient;
 	}
 
 	@Transactional
@@ -228,7 +341,7 @@ public class DocumentService {
 			if (fileName.contains("..")) {
 				throw new FileStorageException("Sorry! Filename contains invalid path sequence " + fileName);
 			}
-			DBFile dbFile = new DBFile(fileName, file.getContentType(), file.getBytes());
+			DBFile dbFile = createDbFile(fileName, file);
 			document.addFile(dbFile);
 			documentRepository.save(document);
 			return dbFile;
@@ -238,7 +351,8 @@ public class DocumentService {
 	}
 
 	@Transactional
-	public List<DBFile> saveDocumentWithMultipleFiles(NewDocument newDocument, MultipartFile[] files) {
+	public List<DBFile> saveDocumentWithMultipleFiles(NewDocument newDocument, MultipartFile[] files,
+			List<FileFingerprint> knownFiles, String username) {
 		Document document = new Document();
 		document.setAuthor(newDocument.getAuthor());
 		document.setDescription(newDocument.getDescription());
@@ -255,20 +369,22 @@ public class DocumentService {
 				if (fileName.contains("..")) {
 					throw new FileStorageException("Sorry! Filename contains invalid path sequence " + fileName);
 				}
-				DBFile dbFile = new DBFile(fileName, file.getContentType(), file.getBytes());
+				DBFile dbFile = createDbFile(fileName, file);
 				document.addFile(dbFile);
 				DBFiles.add(dbFile);
 			} catch (IOException ex) {
 				throw new FileStorageException("Could not store file " + fileName + ". Please try again!", ex);
 			}
 		}
+		DBFiles.addAll(addKnownFiles(document, knownFiles, username));
 		documentRepository.save(document);
 		return DBFiles;
 
 	}
 
 	@Transactional
-	public List<DBFile> submitDocument(NewDocument newDocument, MultipartFile[] files) {
+	public List<DBFile> submitDocument(NewDocument newDocument, MultipartFile[] files,
+			List<FileFingerprint> knownFiles, String username) {
 		Document document = new Document();
 		document.setAuthor(newDocument.getAuthor());
 		document.setDescription(newDocument.getDescription());
@@ -287,27 +403,33 @@ public class DocumentService {
 				if (fileName.contains("..")) {
 					throw new FileStorageException("Sorry! Filename contains invalid path sequence " + fileName);
 				}
-				DBFile dbFile = new DBFile(fileName, file.getContentType(), file.getBytes());
+				DBFile dbFile = createDbFile(fileName, file);
 				document.addFile(dbFile);
 				DBFiles.add(dbFile);
 			} catch (IOException ex) {
 				throw new FileStorageException("Could not store file " + fileName + ". Please try again!", ex);
 			}
 		}
+		DBFiles.addAll(addKnownFiles(document, knownFiles, username));
 		documentRepository.save(document);
+		countInStatistics(document, 1);
 		return DBFiles;
 
 	}
 
 	@Transactional
-	public List<DBFile> submitDocumentAfterSaveForLater(Long id, NewDocument newDocument, MultipartFile[] files) {
-		Document document = getDocument(id);
+	public List<DBFile> submitDocumentAfterSaveForLater(Long id, NewDocument newDocument, MultipartFile[] files,
+			List<FileFingerprint> knownFiles, String username) {
+		Document document = getEditableDocument(id, username);
+		countInStatistics(document, -1);
 		document.setDescription(newDocument.getDescription());
 		document.setDocType(newDocument.getDocType());
 		document.setTitle(newDocument.getTitle());
 		document.setStatus("SUBMITTED");
 		Date date = new Date();
 		document.setSubmissionDate(date);
+		// the loaded document is managed, saving it would merge copies of the new files without their ids.
+		// Each file is persisted while it is still new instead
 		List<DBFile> DBFiles = new ArrayList<DBFile>();
 
 		for (MultipartFile file : files) {
@@ -318,24 +440,29 @@ public class DocumentService {
 				if (fileName.contains("..")) {
 					throw new FileStorageException("Sorry! Filename contains invalid path sequence " + fileName);
 				}
-				DBFile dbFile = new DBFile(fileName, file.getContentType(), file.getBytes());
+				DBFile dbFile = createDbFile(fileName, file);
 				document.addFile(dbFile);
-				DBFiles.add(dbFile);
+				DBFiles.add(dbFileRepository.save(dbFile));
 			} catch (IOException ex) {
 				throw new FileStorageException("Could not store file " + fileName + ". Please try again!", ex);
 			}
 		}
-		documentRepository.save(document);
+		DBFiles.addAll(dbFileRepository.saveAll(addKnownFiles(document, knownFiles, username)));
+		countInStatistics(document, 1);
 		return DBFiles;
 
 	}
 
 	@Transactional
-	public List<DBFile> saveDocumentAfterSaveForLater(Long id, NewDocument newDocument, MultipartFile[] files) {
-		Document document = getDocument(id);
+	public List<DBFile> saveDocumentAfterSaveForLater(Long id, NewDocument newDocument, MultipartFile[] files,
+			List<FileFingerprint> knownFiles, String username) {
+		Document document = getEditableDocument(id, username);
+		countInStatistics(document, -1);
 		document.setDescription(newDocument.getDescription());
 		document.setDocType(newDocument.getDocType());
 		document.setTitle(newDocument.getTitle());
+		// the loaded document is managed, saving it would merge copies of the new files without their ids.
+		// Each file is persisted while it is still new instead
 		List<DBFile> DBFiles = new ArrayList<DBFile>();
 
 		for (MultipartFile file : files) {
@@ -346,46 +473,174 @@ public class DocumentService {
 				if (fileName.contains("..")) {
 					throw new FileStorageException("Sorry! Filename contains invalid path sequence " + fileName);
 				}
-				DBFile dbFile = new DBFile(fileName, file.getContentType(), file.getBytes());
+				DBFile dbFile = createDbFile(fileName, file);
 				document.addFile(dbFile);
-				DBFiles.add(dbFile);
+				DBFiles.add(dbFileRepository.save(dbFile));
 			} catch (IOException ex) {
 				throw new FileStorageException("Could not store file " + fileName + ". Please try again!", ex);
 			}
 		}
-		documentRepository.save(document);
+		DBFiles.addAll(dbFileRepository.saveAll(addKnownFiles(document, knownFiles, username)));
+		countInStatistics(document, 1);
 		return DBFiles;
 
 	}
 
+	/**
+	 * Returns the hashes among the given ones the user can attach without
+	 * uploading. Only content of the user's own files counts, answering for
+	 * anyone's files would tell the user what others have uploaded.
+	 */
+	@Transactional(readOnly = true)
+	public Set<String> findKnownContentHashes(List<FileFingerprint> fingerprints, String username) {
+		Map<String, DBFileMetadata> storedFiles = findStoredFiles(fingerprints, username);
+		Set<String> known = new HashSet<>();
+		for (FileFingerprint fingerprint : fingerprints) {
+			String contentHash = normalizeHash(fingerprint.getContentHash());
+			if (matches(storedFiles.get(contentHash), fingerprint)) {
+				known.add(contentHash);
+			}
+		}
+		return known;
+	}
+
+	// Attaches files the client did not send because their content is already stored.
+	// Size and type are taken from the stored file, only the name comes from the client
+	private List<DBFile> addKnownFiles(Document document, List<FileFingerprint> knownFiles, String username) {
+		List<DBFile> dbFiles = new ArrayList<DBFile>();
+		if (knownFiles == null || knownFiles.isEmpty()) {
+			return dbFiles;
+		}
+		Map<String, DBFileMetadata> storedFiles = findStoredFiles(knownFiles, username);
+		for (FileFingerprint knownFile : knownFiles) {
+			String contentHash = normalizeHash(knownFile.getContentHash());
+			DBFileMetadata storedFile = storedFiles.get(contentHash);
+			// the touch keeps the sweeper from deleting the blob before the new file is committed
+			if (!matches(storedFile, knownFile) || !blobStore.touch(contentHash)) {
+				throw new UploadConflictException("Content " + contentHash + " is not known, upload the file instead");
+			}
+			String fileName = StringUtils.cleanPath(knownFile.getFileName() != null ? knownFile.getFileName() : "");
+			if (fileName.isEmpty() || fileName.contains("..")) {
+				throw new FileStorageException("Sorry! Filename contains invalid path sequence " + fileName);
+			}
+			String fileType = ContentTypes.normalize(storedFile.getFileType());
+			DBFile dbFile = new DBFile(fileName, fileType != null ? fileType : ContentTypes.DEFAULT_TYPE, contentHash,
+					storedFile.getFileSize());
+			document.addFile(dbFile);
+			dbFiles.add(dbFile);
+		}
+		return dbFiles;
+	}
+
+	// One stored file of the user per requested hash, files with the same hash have the same content
+	private Map<String, DBFileMetadata> findStoredFiles(List<FileFingerprint> fingerprints, String username) {
+		Set<String> hashes = new HashSet<>();
+		for (FileFingerprint fingerprint : fingerprints) {
+			String contentHash = normalizeHash(fingerprint.getContentHash());
+			if (ContentHashes.isValid(contentHash)) {
+				hashes.add(contentHash);
+			}
+		}
+		Map<String, DBFileMetadata> storedFiles = new HashMap<>();
+		if (hashes.isEmpty()) {
+			return storedFiles;
+		}
+		for (DBFileMetadata file : dbFileRepository.findMetadataByAuthorAndContentHashIn(username, hashes)) {
+			if (file.getFileSize() != null) {
+				storedFiles.putIfAbsent(file.getContentHash(), file);
+			}
+		}
+		return storedFiles;
+	}
+
+	// Every fingerprint is checked on its own, a request may repeat a hash with different sizes
+	private static boolean matches(DBFileMetadata storedFile, FileFingerprint fingerprint) {
+		return storedFile != null && storedFile.getFileSize().equals(fingerprint.getSize());
+	}
+
+	private static String normalizeHash(String contentHash) {
+		return contentHash != null ? contentHash.trim().toLowerCase() : null;
+	}
+
+	@Transactional
+	public DBFile attachFile(Long documentId, String username, DBFile dbFile) {
+		Document document = getEditableDocument(documentId, username);
+		document.addFile(dbFile);
+		// saving the document would merge a copy of the new file, save the file itself so the caller gets its id
+		return dbFileRepository.save(dbFile);
+	}
+
+	// Files can only be added by the author while the document is still saved for later
+	@Transactional(readOnly = true)
+	public Document getEditableDocument(Long documentId, String username) {
+		Document document = getDocument(documentId);
+		if (!username.equals(document.getAuthor())) {
+			throw new AccessDeniedException("Document " + documentId + " belongs to another user");
+		}
+		if (!"SAVED".equals(document.getStatus())) {
+			throw new UploadConflictException("Document " + documentId + " can no longer be changed");
+		}
+		return document;
+	}
+
+	private DBFile createDbFile(String fileName, MultipartFile file) throws IOException {
+		try (InputStream in = file.getInputStream()) {
+			StoredBlob blob = blobStore.put(in,
+					compressionPolicy.shouldCompress(file.getContentType(), fileName, file.getSize()));
+			return new DBFile(fileName, file.getContentType(), blob.getContentHash(), blob.getSize());
+		}
+	}
+
 	@Transactional
 	public void approveDocument(DocumentInfoAfterReview documentInfoAfterReview) {
 		Document document = getDocument(documentInfoAfterReview.getId());
+		countInStatistics(document, -1);
 		Date date = new Date();
 		document.setReviewDate(date);
 		document.setDocumentReceiver(documentInfoAfterReview.getDocumentReceiver());
 		document.setStatus("APPROVED");
 		documentRepository.save(document);
+		countInStatistics(document, 1);
 	}
 
 	@Transactional
 	public void rejectDocument(DocumentInfoAfterReview documentInfoAfterReview) {
 		Document document = getDocument(documentInfoAfterReview.getId());
+		countInStatistics(document, -1);
 		Date date = new Date();
 		document.setReviewDate(date);
 		document.setDocumentReceiver(documentInfoAfterReview.getDocumentReceiver());
 		document.setStatus("REJECTED");
 		document.setRejectionReason(documentInfoAfterReview.getRejectionReason());
 		documentRepository.save(document);
+		countInStatistics(document, 1);
 	}
 
 	@Transactional
 	public void deleteSavedDocumentById(Long id) {
-		documentRepository.deleteById(id);
+		Document document = getDocument(id);
+		countInStatistics(document, -1);
+		documentRepository.delete(document);
 	}
 
 	@Transactional
 	public void deleteDocumentByDescription(String description) {
-		documentRepository.deleteByDescription(description);
+		documentRepository.deleteByDescription(description).forEach(document -> countInStatistics(document, -1));
+	}
+
+	private static LocalDate toLocalDate(Date date) {
+		return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+	}
+
+	private static Date toDate(LocalDate day) {
+		return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+	}
+
+	// drafts have no submission date and are not part of the statistics
+	private void countInStatistics(Document document, long delta) {
+		if (!"SAVED".equals(document.getStatus()) && document.getSubmissionDate() != null) {
+			documentStatisticsRepository.add(document.getDocType(), document.getSubmissionDate(),
+					document.getStatus(), delta);
+		}
 	}
 }
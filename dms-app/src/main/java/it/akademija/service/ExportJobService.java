@@ -0,0 +1,141 @@
+package it.akademija.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import it.akademija.file.exceptions.ExportJobRejectedException;
+import it.akademija.file.exceptions.FileStorageException;
+import it.akademija.file.exceptions.MyFileNotFoundException;
+import it.akademija.file.export.ExportJob;
+
+/**
+ * Runs ZIP exports in the background on a small bounded pool. Archives are
+ * spooled to local disk and kept until they expire. A user asking again for an
+ * export that is still queued or running gets the existing job back.
+ */
+@Service
+public class ExportJobService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExportJobService.class);
+
+	private final DBFileStorageService dbFileStorageService;
+	private final Path spoolDir;
+	private final long expiryMillis;
+	private final ThreadPoolExecutor workers;
+	private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+	@Autowired
+	public ExportJobService(DBFileStorageService dbFileStorageService,
+			@Value("${dms.export.spool-dir}") String spoolDir,
+			@Value("${dms.export.workers:2}") int workers,
+			@Value("${dms.export.queue-capacity:20}") int queueCapacity,
+			@Value("${dms.export.expiry-minutes:60}") long expiryMinutes) {
+		this.dbFileStorageService = dbFileStorageService;
+		this.spoolDir = Paths.get(spoolDir).toAbsolutePath().normalize();
+		this.expiryMillis = TimeUnit.MINUTES.toMillis(expiryMinutes);
+		this.workers = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("export-"));
+		try {
+			Files.createDirectories(this.spoolDir);
+			// jobs are kept in memory only, archives left from a previous run are unreachable
+			try (Stream<Path> leftovers = Files.list(this.spoolDir)) {
+				leftovers.forEach(ExportJobService::deleteQuietly);
+			}
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not prepare export directory " + this.spoolDir, ex);
+		}
+	}
+
+	public synchronized ExportJob submit(String username, boolean withCsv, String requestedBy) {
+		for (ExportJob job : jobs.values()) {
+			if (job.isActive() && job.isSameExport(username, withCsv, requestedBy)) {
+				return job;
+			}
+		}
+		ExportJob job = new ExportJob(UUID.randomUUID().toString(), username, withCsv, requestedBy);
+		jobs.put(job.getId(), job);
+		try {
+			workers.execute(() -> run(job));
+		} catch (RejectedExecutionException ex) {
+			jobs.remove(job.getId());
+			throw new ExportJobRejectedException("Too many exports are waiting, please try again later", ex);
+		}
+		return job;
+	}
+
+	public ExportJob getJob(String jobId, String requestedBy) {
+		ExportJob job = jobs.get(jobId);
+		if (job == null || !job.getRequestedBy().equals(requestedBy)) {
+			throw new MyFileNotFoundException("Export not found with id " + jobId);
+		}
+		return job;
+	}
+
+	@Scheduled(fixedDelayString = "${dms.export.cleanup-interval-ms:60000}")
+	public void removeExpiredJobs() {
+		Date now = new Date();
+		for (Iterator<ExportJob> iterator = jobs.values().iterator(); iterator.hasNext();) {
+			ExportJob job = iterator.next();
+			if (job.isExpired(now)) {
+				iterator.remove();
+				if (job.getArchive() != null) {
+					deleteQuietly(job.getArchive());
+				}
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+
+	private void run(ExportJob job) {
+		Path part = spoolDir.resolve(job.getId() + ".zip.part");
+		try {
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part))) {
+				dbFileStorageService.zipFiles(job.getUsername(), job.isWithCsv(), out, job);
+			}
+			Path archive = spoolDir.resolve(job.getId() + ".zip");
+			Files.move(part, archive, StandardCopyOption.ATOMIC_MOVE);
+			job.ready(archive, new Date(System.currentTimeMillis() + expiryMillis));
+		} catch (Exception ex) {
+			LOGGER.error("Export {} for {} failed", job.getId(), job.getUsername(), ex);
+			deleteQuietly(part);
+			job.failed("Export failed, please try again", new Date(System.currentTimeMillis() + expiryMillis));
+		}
+	}
+
+	private static void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ex) {
+			LOGGER.warn("Could not delete export file {}", path, ex);
+		}
+	}
+}
@@ -59,25 +59,25 @@ public class GroupService {
 				.collect(Collectors.toList());
 	}
 	
-	@Transactional
+	@Transactional(readOnly = true)
 	public GroupForClient getGroupForClient(String groupName) {
-		return getGroupsForClient().stream().filter(group -> group.getId().equals(groupName)).findFirst()
-				.orElseThrow(() -> new RuntimeException("Can't find group"));
+		Group group = getGroup(groupName);
+		return new GroupForClient(group.getId(), group.getComment(), group.getUsers().size(), group.getGroupUsernames(),
+				group.getGroupDocTypesForCreation(), group.getGroupDocTypesForApproval());
 	}
 
-	@Transactional
+	@Transactional(readOnly = true)
 	public Group getGroup(String groupName) {
-		return getGroups().stream().filter(group -> group.getId().equals(groupName)).findFirst()
-				.orElseThrow(() -> new RuntimeException("Can't find group"));
+		Group group = groupRepository.findById(groupName);
+		if (group == null) {
+			throw new RuntimeException("Can't find group");
+		}
+		return group;
 	}
 	
 	@Transactional(readOnly = true)
 	public List<String> getAllGroupNames() {
-		List<String> allGroupNames = new ArrayList<String>();
-		for (int i = 0; i < getGroups().size(); i++) {
-			allGroupNames.add(getGroups().get(i).getId());
-		}
-		return allGroupNames;
+		return groupRepository.findAllGroupNames();
 	}
 
 	@Transactional
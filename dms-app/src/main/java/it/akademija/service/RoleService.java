@@ -40,16 +40,22 @@ public class RoleService {
 				.collect(Collectors.toList());
 	}
 
-	@Transactional
+	@Transactional(readOnly = true)
 	public RoleForClient getRoleForClient(String roleName) {
-		return getRolesForClient().stream().filter(role -> role.getId().equals(roleName)).findFirst()
-				.orElseThrow(() -> new RuntimeException("Can't find group"));
+		RoleForClient role = roleRepository.findRoleForClientById(roleName);
+		if (role == null) {
+			throw new RuntimeException("Can't find role");
+		}
+		return role;
 	}
 	
-	@Transactional
+	@Transactional(readOnly = true)
 	public Role getRole(String roleName) {
-		return getRoles().stream().filter(role -> role.getId().equals(roleName)).findFirst()
-				.orElseThrow(() -> new RuntimeException("Can't find role"));
+		Role role = roleRepository.findById(roleName);
+		if (role == null) {
+			throw new RuntimeException("Can't find role");
+		}
+		return role;
 	}
 
 
@@ -0,0 +1,122 @@
+package it.akademija.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import it.akademija.dao.DBFileRepository;
+import it.akademija.file.cache.FileMetadataCache;
+import it.akademija.file.storage.BlobStore;
+
+/**
+ * Reclaims storage nothing refers to any more: file rows that were never
+ * attached to a document, and blobs no file row points at. Only things older
+ * than the grace period are touched, so uploads in flight are safe. Work is
+ * done in small batches with a pause in between, each batch in its own short
+ * transaction, so the sweeper never holds locks on the files table for long.
+ */
+@Service
+public class StorageSweeperService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StorageSweeperService.class);
+
+	private final DBFileRepository dbFileRepository;
+	private final BlobStore blobStore;
+	private final FileMetadataCache fileMetadataCache;
+	private final boolean enabled;
+	private final long graceMillis;
+	private final int batchSize;
+	private final long batchPauseMillis;
+
+	@Autowired
+	public StorageSweeperService(DBFileRepository dbFileRepository, BlobStore blobStore,
+			FileMetadataCache fileMetadataCache, @Value("${dms.sweeper.enabled:true}") boolean enabled,
+			@Value("${dms.sweeper.grace-hours:24}") long graceHours,
+			@Value("${dms.sweeper.batch-size:100}") int batchSize,
+			@Value("${dms.sweeper.batch-pause-ms:200}") long batchPauseMillis) {
+		this.dbFileRepository = dbFileRepository;
+		this.blobStore = blobStore;
+		this.fileMetadataCache = fileMetadataCache;
+		this.enabled = enabled;
+		this.graceMillis = TimeUnit.HOURS.toMillis(graceHours);
+		this.batchSize = batchSize;
+		this.batchPauseMillis = batchPauseMillis;
+	}
+
+	@Scheduled(initialDelayString = "${dms.sweeper.initial-delay-ms:600000}", fixedDelayString = "${dms.sweeper.interval-ms:3600000}")
+	public void sweep() {
+		if (!enabled) {
+			return;
+		}
+		long cutoff = System.currentTimeMillis() - graceMillis;
+		try {
+			deleteOrphanedFiles(new Date(cutoff));
+			deleteUnreferencedBlobs(cutoff);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void deleteOrphanedFiles(Date cutoff) throws InterruptedException {
+		int deleted = 0;
+		List<String> ids;
+		do {
+			ids = dbFileRepository.findOrphanedIds(cutoff, PageRequest.of(0, batchSize));
+			if (ids.isEmpty()) {
+				break;
+			}
+			deleted += dbFileRepository.deleteByIdIn(ids);
+			// bulk deletes skip the entity listener
+			ids.forEach(fileMetadataCache::evict);
+			pause();
+		} while (ids.size() == batchSize);
+		LOGGER.info("Storage sweep removed {} orphaned files", deleted);
+	}
+
+	private void deleteUnreferencedBlobs(long cutoff) throws InterruptedException {
+		long blobs = 0;
+		long bytes = 0;
+		try (Stream<String> contentHashes = blobStore.listContentHashes()) {
+			Iterator<String> iterator = contentHashes.iterator();
+			List<String> batch = new ArrayList<>(batchSize);
+			while (iterator.hasNext()) {
+				batch.add(iterator.next());
+				if (batch.size() < batchSize && iterator.hasNext()) {
+					continue;
+				}
+				Set<String> referenced = new HashSet<>(dbFileRepository.findReferencedContentHashes(batch));
+				for (String contentHash : batch) {
+					if (!referenced.contains(contentHash)) {
+						long freed = blobStore.deleteIfUnusedSince(contentHash, cutoff);
+						if (freed > 0) {
+							blobs++;
+							bytes += freed;
+						}
+					}
+				}
+				batch.clear();
+				pause();
+			}
+		}
+		LOGGER.info("Storage sweep removed {} unreferenced blobs, reclaimed {} bytes", blobs, bytes);
+	}
+
+	private void pause() throws InterruptedException {
+		if (batchPauseMillis > 0) {
+			Thread.sleep(batchPauseMillis);
+		}
+	}
+}
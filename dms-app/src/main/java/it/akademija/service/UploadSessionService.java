@@ -0,0 +1,282 @@
+package it.akademija.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import it.akademija.dao.UploadSessionRepository;
+import it.akademija.file.exceptions.FileStorageException;
+import it.akademija.file.exceptions.InvalidUploadException;
+import it.akademija.file.exceptions.MyFileNotFoundException;
+import it.akademija.file.exceptions.UploadConflictException;
+import it.akademija.file.storage.BlobStore;
+import it.akademija.file.storage.CompressionPolicy;
+import it.akademija.file.storage.ContentHashes;
+import it.akademija.file.storage.ContentTypes;
+import it.akademija.file.storage.StoredBlob;
+import it.akademija.model.file.DBFile;
+import it.akademija.model.file.NewUploadSession;
+import it.akademija.model.file.UploadSession;
+
+/**
+ * Chunked, resumable uploads. Each session owns one spool file on disk that
+ * chunks are written into at their offset, so no chunk is ever held in memory.
+ * Sessions live in the database and survive a restart; a client that lost its
+ * connection asks for the session and continues from nextChunk. Completing the
+ * session moves the spooled file into the blob store and attaches it to the
+ * document.
+ */
+@Service
+public class UploadSessionService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(UploadSessionService.class);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final UploadSessionRepository uploadSessionRepository;
+	private final DocumentService documentService;
+	private final BlobStore blobStore;
+	private final CompressionPolicy compressionPolicy;
+	private final Path spoolDir;
+	private final int defaultChunkSize;
+	private final int maxChunkSize;
+	private final long maxFileSize;
+	private final long expiryMillis;
+
+	// chunks of one session are applied one at a time, different sessions run in parallel
+	private final Map<String, Object> sessionLocks = new ConcurrentHashMap<>();
+
+	// sessions a chunk is being received for
+	private final Set<String> receiving = ConcurrentHashMap.newKeySet();
+
+	@Autowired
+	public UploadSessionService(UploadSessionRepository uploadSessionRepository, DocumentService documentService,
+			BlobStore blobStore, CompressionPolicy compressionPolicy,
+			@Value("${dms.upload.spool-dir}") String spoolDir,
+			@Value("${dms.upload.chunk-size:4MB}") DataSize defaultChunkSize,
+			@Value("${dms.upload.max-chunk-size:16MB}") DataSize maxChunkSize,
+			@Value("${dms.upload.max-file-size:2GB}") DataSize maxFileSize,
+			@Value("${dms.upload.expiry-hours:24}") long expiryHours) {
+		this.uploadSessionRepository = uploadSessionRepository;
+		this.documentService = documentService;
+		this.blobStore = blobStore;
+		this.compressionPolicy = compressionPolicy;
+		this.spoolDir = Paths.get(spoolDir).toAbsolutePath().normalize();
+		this.defaultChunkSize = (int) defaultChunkSize.toBytes();
+		this.maxChunkSize = (int) maxChunkSize.toBytes();
+		this.maxFileSize = maxFileSize.toBytes();
+		this.expiryMillis = TimeUnit.HOURS.toMillis(expiryHours);
+		try {
+			Files.createDirectories(this.spoolDir);
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not create upload directory " + this.spoolDir, ex);
+		}
+	}
+
+	public UploadSession createSession(NewUploadSession newUploadSession, String username) {
+		String fileName = StringUtils.cleanPath(newUploadSession.getFileName());
+		if (fileName.contains("..")) {
+			throw new FileStorageException("Sorry! Filename contains invalid path sequence " + fileName);
+		}
+		if (newUploadSession.getTotalSize() > maxFileSize) {
+			throw new InvalidUploadException("File is larger than " + maxFileSize + " bytes");
+		}
+		int chunkSize = newUploadSession.getChunkSize() != null ? newUploadSession.getChunkSize()
+				: defaultChunkSize;
+		if (chunkSize > maxChunkSize) {
+			throw new InvalidUploadException("Chunk size can not exceed " + maxChunkSize + " bytes");
+		}
+		String fileType = ContentTypes.normalize(newUploadSession.getFileType());
+		if (fileType == null) {
+			throw new InvalidUploadException("Invalid file type " + newUploadSession.getFileType());
+		}
+		String contentHash = newUploadSession.getContentHash();
+		if (contentHash != null) {
+			contentHash = contentHash.toLowerCase();
+			if (!ContentHashes.isValid(contentHash)) {
+				throw new InvalidUploadException("Content hash must be a hex encoded SHA-256");
+			}
+		}
+		// fail early instead of after the whole file has been sent
+		documentService.getEditableDocument(newUploadSession.getDocumentId(), username);
+
+		UploadSession session = uploadSessionRepository.save(new UploadSession(username,
+				newUploadSession.getDocumentId(), fileName, fileType,
+				newUploadSession.getTotalSize(), chunkSize, contentHash));
+		try {
+			Files.createFile(spoolFile(session));
+		} catch (IOException ex) {
+			uploadSessionRepository.delete(session);
+			throw new FileStorageException("Could not start upload of " + fileName, ex);
+		}
+		return session;
+	}
+
+	public UploadSession getSession(String uploadId, String username) {
+		UploadSession session = uploadSessionRepository.findById(uploadId).orElse(null);
+		if (session == null || !session.getUsername().equals(username)) {
+			throw new MyFileNotFoundException("Upload not found with id " + uploadId);
+		}
+		return session;
+	}
+
+	/**
+	 * Stores chunk number index. The chunk is written into the session file at
+	 * its offset as it arrives, and only counts once its size and SHA-256 match.
+	 * A rejected chunk is overwritten by the next attempt. Sending a chunk that
+	 * is already stored again is harmless, skipping ahead is rejected, and so is
+	 * a chunk sent while another one of the session is still being received.
+	 */
+	public UploadSession writeChunk(String uploadId, int index, String checksum, InputStream in, String username) {
+		UploadSession session = getSession(uploadId, username);
+		long offset = (long) index * session.getChunkSize();
+		if (index < 0 || offset >= session.getTotalSize()) {
+			throw new InvalidUploadException("Chunk " + index + " is outside of the file");
+		}
+		if (offset < session.getReceivedBytes()) {
+			return session;
+		}
+		if (offset > session.getReceivedBytes()) {
+			throw new UploadConflictException("Expected chunk " + session.getNextChunk() + ", got " + index);
+		}
+		long expectedSize = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+
+		// the chunk is received without the session lock, a slow client must not hold up the session
+		if (!receiving.add(uploadId)) {
+			throw new UploadConflictException("Chunk " + index + " is already being received");
+		}
+		try {
+			MessageDigest digest = ContentHashes.newDigest();
+			try (FileChannel target = FileChannel.open(spoolFile(session), StandardOpenOption.WRITE)) {
+				long size = receive(in, target, offset, expectedSize, digest);
+				if (size != expectedSize) {
+					throw new InvalidUploadException(
+							"Chunk " + index + " must be " + expectedSize + " bytes long, got " + size);
+				}
+				if (checksum == null || !ContentHashes.toHex(digest.digest()).equalsIgnoreCase(checksum.trim())) {
+					throw new InvalidUploadException("Checksum of chunk " + index + " does not match");
+				}
+				target.force(false);
+			}
+
+			synchronized (lockFor(uploadId)) {
+				session = getSession(uploadId, username);
+				if (offset != session.getReceivedBytes()) {
+					throw new UploadConflictException("Expected chunk " + session.getNextChunk() + ", got " + index);
+				}
+				session.setReceivedBytes(offset + expectedSize);
+				session.setLastUpdate(new Date());
+				return uploadSessionRepository.save(session);
+			}
+		} catch (IOException ex) {
+			throw new FileStorageException("Could not store chunk " + index + " of " + session.getFileName(), ex);
+		} finally {
+			receiving.remove(uploadId);
+		}
+	}
+
+	// Copies up to expectedSize bytes into the file at offset, and one more if
+	// the client sends it, so an oversized chunk shows in the returned size
+	private static long receive(InputStream in, FileChannel target, long offset, long expectedSize,
+			MessageDigest digest) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long size = 0;
+		int read;
+		while (size < expectedSize
+				&& (read = in.read(buffer, 0, (int) Math.min(buffer.length, expectedSize - size))) != -1) {
+			digest.update(buffer, 0, read);
+			ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+			while (bytes.hasRemaining()) {
+				target.write(bytes, offset + size + bytes.position());
+			}
+			size += read;
+		}
+		return in.read() != -1 ? size + 1 : size;
+	}
+
+	public DBFile completeSession(String uploadId, String username) {
+		synchronized (lockFor(uploadId)) {
+			UploadSession session = getSession(uploadId, username);
+			if (!session.isComplete()) {
+				throw new UploadConflictException("Upload is missing bytes from " + session.getReceivedBytes());
+			}
+			StoredBlob blob;
+			try (InputStream in = Files.newInputStream(spoolFile(session))) {
+				blob = blobStore.put(in, compressionPolicy.shouldCompress(session.getFileType(),
+						session.getFileName(), session.getTotalSize()));
+			} catch (IOException ex) {
+				throw new FileStorageException("Could not store file " + session.getFileName(), ex);
+			}
+			if (session.getContentHash() != null && !session.getContentHash().equals(blob.getContentHash())) {
+				throw new InvalidUploadException("Uploaded file does not match the announced content hash");
+			}
+
+			DBFile dbFile = documentService.attachFile(session.getDocumentId(), username, new DBFile(
+					session.getFileName(), session.getFileType(), blob.getContentHash(), blob.getSize()));
+			removeSession(session);
+			return dbFile;
+		}
+	}
+
+	public void cancelSession(String uploadId, String username) {
+		synchronized (lockFor(uploadId)) {
+			removeSession(getSession(uploadId, username));
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${dms.upload.cleanup-interval-ms:3600000}")
+	public void removeExpiredSessions() {
+		Date limit = new Date(System.currentTimeMillis() - expiryMillis);
+		for (UploadSession session : uploadSessionRepository.findByLastUpdateBefore(limit)) {
+			synchronized (lockFor(session.getId())) {
+				LOGGER.info("Removing abandoned upload {} of {}", session.getId(), session.getFileName());
+				removeSession(session);
+			}
+		}
+	}
+
+	private void removeSession(UploadSession session) {
+		uploadSessionRepository.delete(session);
+		deleteQuietly(spoolFile(session));
+		sessionLocks.remove(session.getId());
+	}
+
+	private Object lockFor(String uploadId) {
+		return sessionLocks.computeIfAbsent(uploadId, id -> new Object());
+	}
+
+	private Path spoolFile(UploadSession session) {
+		return spoolDir.resolve(session.getId() + ".upload");
+	}
+
+	private static void deleteQuietly(Path path) {
+		if (path == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ex) {
+			LOGGER.warn("Could not delete upload file {}", path, ex);
+		}
+	}
+}
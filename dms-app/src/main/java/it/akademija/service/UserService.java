@@ -28,6 +28,7 @@ import it.akademija.dao.RoleRepository;
 import it.akademija.dao.UserRepository;
 import it.akademija.model.doctype.DocType;
 import it.akademija.model.group.Group;
+import it.akademija.model.page.PageForClient;
 import it.akademija.model.role.Role;
 import it.akademija.model.user.NewUser;
 import it.akademija.model.user.User;
@@ -116,11 +117,11 @@ public class UserService implements UserDetailsService {
 	}
 	
 	@Transactional(readOnly = true)
-	public List<UserForTable> getPageableUsersForClient(int page, int size) {
-		Pageable pageable = PageRequest.of(page, size);	
-		return userRepository.findAllByOrderByIdDesc(pageable).stream().map((user) -> new UserForTable(user.getFirstName(),
-				user.getLastName(), user.getUsername(), user.getComment(), user.getUserGroupNames(), userRepository.count()))
-				.collect(Collectors.toList());
+	public PageForClient<UserForTable> getPageableUsersForClient(int page, int size, boolean withTotal) {
+		Pageable pageable = PageRequest.of(page, size);
+		return PageForClient.of(userRepository.findAllByOrderByIdDesc(pageable).map((user) -> new UserForTable(
+				user.getFirstName(), user.getLastName(), user.getUsername(), user.getComment(),
+				user.getUserGroupNames())), withTotal, userRepository::count);
 	}
 	
 	@Transactional(readOnly = true)
@@ -144,32 +145,33 @@ public class UserService implements UserDetailsService {
 	}
 	
 	@Transactional(readOnly = true)
-	public List<UserForTable> getPageableUsersForClientContaining(String userText, int page, int size) {
-		Pageable pageable = PageRequest.of(page, size);	
-		return userRepository.findByUsernameContainingIgnoreCaseOrFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(userText, userText, userText, pageable).stream().map((user) -> new UserForTable(user.getFirstName(),
-				user.getLastName(), user.getUsername(), user.getComment(), user.getUserGroupNames(), userRepository.countByUsernameContainingIgnoreCaseOrFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(userText, userText, userText)))
-				.collect(Collectors.toList());
+	public PageForClient<UserForTable> getPageableUsersForClientContaining(String userText, int page, int size,
+			boolean withTotal) {
+		Pageable pageable = PageRequest.of(page, size);
+		return PageForClient.of(userRepository.findByUsernameContainingIgnoreCaseOrFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(userText, userText, userText, pageable).map((user) -> new UserForTable(user.getFirstName(),
+				user.getLastName(), user.getUsername(), user.getComment(), user.getUserGroupNames())),
+				withTotal, () -> userRepository.countByUsernameContainingIgnoreCaseOrFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(userText, userText, userText));
 	}
 
 	@Transactional(readOnly = true)
 	public List<String> getAllUsernames() {
-		List<String> allUsernames = new ArrayList<String>();
-		for (int i = 0; i < getUsers().size(); i++) {
-			allUsernames.add(getUsers().get(i).getUsername());
-		}
-		return allUsernames;
+		return userRepository.findAllUsernames();
 	}
 
-	@Transactional
+	@Transactional(readOnly = true)
 	public User getUser(String username) {
-		return getUsers().stream().filter(u -> u.getUsername().equals(username)).findFirst()
-				.orElseThrow(() -> new RuntimeException("Can't find user"));
+		User user = userRepository.findByUsername(username);
+		if (user == null) {
+			throw new RuntimeException("Can't find user");
+		}
+		return user;
 	}
 
-	@Transactional
+	@Transactional(readOnly = true)
 	public UserForClient getUserForClient(String username) {
-		return getUsersForClient().stream().filter(u -> u.getUsername().equals(username)).findFirst()
-				.orElseThrow(() -> new RuntimeException("Can't find user"));
+		User user = getUser(username);
+		return new UserForClient(user.getFirstName(), user.getLastName(), user.getUsername(), user.getComment(),
+				user.getUserGroupNames());
 	}
 
 	@Transactional
@@ -232,10 +234,9 @@ public class UserService implements UserDetailsService {
 	public void assignListOfUsersToOneGroup(String groupName, List<String> usernames) {
 		Group group = groupRepository.findById(groupName);
 
-		for (int i = 0; i < getUsers().size(); i++) {
-			User user = userRepository.findByUsername(getUsers().get(i).getUsername());
-			Collection<Group> userGroups = user.getGroups();
-			userGroups.remove(group);
+		// only current members can lose the group, no need to walk every user
+		for (User user : new ArrayList<User>(group.getUsers())) {
+			user.getGroups().remove(group);
 		}
 
 		for (String username : usernames) {
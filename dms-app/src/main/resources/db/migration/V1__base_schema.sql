@@ -0,0 +1,112 @@
+-- Schema as it was maintained by hbm2ddl update. Databases created before
+-- migrations are baselined at version 0, so every statement here must also
+-- be a no-op on a schema that already has it.
+
+CREATE SEQUENCE IF NOT EXISTS hibernate_sequence START WITH 1 INCREMENT BY 1;
+CREATE SEQUENCE IF NOT EXISTS document_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS user (
+	id BIGINT NOT NULL,
+	comment VARCHAR(255),
+	first_name VARCHAR(255),
+	is_admin BOOLEAN NOT NULL,
+	last_name VARCHAR(255),
+	password VARCHAR(255),
+	username VARCHAR(255) NOT NULL,
+	PRIMARY KEY (id),
+	CONSTRAINT uk_user_username UNIQUE (username)
+);
+
+CREATE TABLE IF NOT EXISTS role (
+	id VARCHAR(255) NOT NULL,
+	comment VARCHAR(255),
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS group_table (
+	id VARCHAR(255) NOT NULL,
+	comment VARCHAR(255),
+	create_date TIMESTAMP,
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS doc_type (
+	id VARCHAR(255) NOT NULL,
+	comment VARCHAR(255),
+	create_date TIMESTAMP,
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS users_roles (
+	user_id BIGINT NOT NULL,
+	role_id VARCHAR(255) NOT NULL,
+	CONSTRAINT fk_users_roles_user FOREIGN KEY (user_id) REFERENCES user (id),
+	CONSTRAINT fk_users_roles_role FOREIGN KEY (role_id) REFERENCES role (id)
+);
+
+CREATE TABLE IF NOT EXISTS users_groups (
+	user_id BIGINT NOT NULL,
+	group_id VARCHAR(255) NOT NULL,
+	CONSTRAINT fk_users_groups_user FOREIGN KEY (user_id) REFERENCES user (id),
+	CONSTRAINT fk_users_groups_group FOREIGN KEY (group_id) REFERENCES group_table (id)
+);
+
+CREATE TABLE IF NOT EXISTS group_doctypes_for_creation (
+	group_id VARCHAR(255) NOT NULL,
+	doctype_id VARCHAR(255) NOT NULL,
+	CONSTRAINT fk_group_doctypes_for_creation_group FOREIGN KEY (group_id) REFERENCES group_table (id),
+	CONSTRAINT fk_group_doctypes_for_creation_doctype FOREIGN KEY (doctype_id) REFERENCES doc_type (id)
+);
+
+CREATE TABLE IF NOT EXISTS group_doctypes_for_approval (
+	group_id VARCHAR(255) NOT NULL,
+	doctype_id VARCHAR(255) NOT NULL,
+	CONSTRAINT fk_group_doctypes_for_approval_group FOREIGN KEY (group_id) REFERENCES group_table (id),
+	CONSTRAINT fk_group_doctypes_for_approval_doctype FOREIGN KEY (doctype_id) REFERENCES doc_type (id)
+);
+
+CREATE TABLE IF NOT EXISTS document (
+	id BIGINT NOT NULL,
+	author VARCHAR(255),
+	description VARCHAR(255),
+	doc_type VARCHAR(255),
+	document_receiver VARCHAR(255),
+	rejection_reason VARCHAR(255),
+	review_date DATE,
+	status VARCHAR(255),
+	submission_date DATE,
+	title VARCHAR(255),
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS files (
+	id VARCHAR(255) NOT NULL,
+	content_hash VARCHAR(64),
+	create_date TIMESTAMP,
+	file_name VARCHAR(255),
+	file_size BIGINT,
+	file_type VARCHAR(255),
+	document_id BIGINT,
+	PRIMARY KEY (id),
+	CONSTRAINT fk_files_document FOREIGN KEY (document_id) REFERENCES document (id)
+);
+
+-- files rows from before the content-addressed blob store
+ALTER TABLE files ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+ALTER TABLE files ADD COLUMN IF NOT EXISTS file_size BIGINT;
+ALTER TABLE files ADD COLUMN IF NOT EXISTS create_date TIMESTAMP;
+
+CREATE TABLE IF NOT EXISTS upload_sessions (
+	id VARCHAR(255) NOT NULL,
+	chunk_size INTEGER NOT NULL,
+	content_hash VARCHAR(64),
+	create_date TIMESTAMP,
+	document_id BIGINT,
+	file_name VARCHAR(255),
+	file_type VARCHAR(255),
+	last_update TIMESTAMP,
+	received_bytes BIGINT NOT NULL,
+	total_size BIGINT NOT NULL,
+	username VARCHAR(255),
+	PRIMARY KEY (id)
+);
@@ -0,0 +1,13 @@
+-- Indexes follow the list, approval and statistics queries in
+-- DocumentRepository and the lookups of the file sweeper. Ids come last so
+-- newest-first pages and keyset pages (id < :afterId) read one index range.
+
+CREATE INDEX IF NOT EXISTS idx_document_author_id ON document (author, id);
+CREATE INDEX IF NOT EXISTS idx_document_author_status_id ON document (author, status, id);
+CREATE INDEX IF NOT EXISTS idx_document_doc_type_status_id ON document (doc_type, status, id);
+CREATE INDEX IF NOT EXISTS idx_document_doc_type_status_submission_date ON document (doc_type, status, submission_date);
+
+CREATE INDEX IF NOT EXISTS idx_files_content_hash ON files (content_hash);
+CREATE INDEX IF NOT EXISTS idx_files_create_date ON files (create_date);
+
+CREATE INDEX IF NOT EXISTS idx_upload_sessions_last_update ON upload_sessions (last_update);
@@ -0,0 +1,18 @@
+-- Number of documents per doc type, day of submission and current status.
+-- Kept up to date by DocumentService as documents are submitted, reviewed
+-- or deleted, so statistics read a few rows per day instead of documents.
+
+CREATE TABLE document_daily_stats (
+	doc_type VARCHAR(255) NOT NULL,
+	submission_day DATE NOT NULL,
+	status VARCHAR(255) NOT NULL,
+	document_count BIGINT NOT NULL,
+	PRIMARY KEY (doc_type, submission_day, status)
+);
+
+-- one-time backfill from the documents submitted so far
+INSERT INTO document_daily_stats (doc_type, submission_day, status, document_count)
+SELECT doc_type, CAST(submission_date AS DATE), status, COUNT(*)
+FROM document
+WHERE status <> 'SAVED' AND doc_type IS NOT NULL AND submission_date IS NOT NULL
+GROUP BY doc_type, CAST(submission_date AS DATE), status;
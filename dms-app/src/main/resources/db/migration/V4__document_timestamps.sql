@@ -0,0 +1,5 @@
+-- Submission and review keep their time of day, so review latency can be
+-- measured. Dates stored so far become midnight of their day.
+
+ALTER TABLE document ALTER COLUMN submission_date TIMESTAMP;
+ALTER TABLE document ALTER COLUMN review_date TIMESTAMP;
@@ -0,0 +1,180 @@
+package it.akademija.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import it.akademija.model.file.DBFile;
+import it.akademija.service.DBFileStorageService;
+
+/**
+ * Downloads of blobs stored as is are left to Tomcat's sendfile when the
+ * connector offers it, which shows in the request attributes the controller
+ * sets instead of a response body.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase
+public class FileDownloadSendfileTest {
+
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	private static final int LARGE_FILE = 64 * 1024;
+	private static final int SMALL_FILE = 1024;
+
+	@Autowired
+	private WebApplicationContext context;
+
+	@Autowired
+	private DBFileStorageService dbFileStorageService;
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	public void setUp() {
+		// the security filters are left out, the controller only logs the user name
+		mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+		SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user", null));
+	}
+
+	@AfterEach
+	public void tearDown() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	public void largeFileIsHandedToSendfile() throws Exception {
+		byte[] content = randomContent(LARGE_FILE);
+		DBFile dbFile = store(content);
+
+		HttpServletRequest request = mockMvc
+				.perform(get("/api/file/downloadFile/{fileId}", dbFile.getId()).requestAttr(SENDFILE_SUPPORT, true))
+				.andExpect(status().isOk()).andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, LARGE_FILE))
+				.andExpect(content().bytes(new byte[0])).andReturn().getRequest();
+
+		assertEquals(storedPath(dbFile), request.getAttribute(SENDFILE_FILENAME));
+		assertEquals(0L, request.getAttribute(SENDFILE_START));
+		assertEquals((long) LARGE_FILE, request.getAttribute(SENDFILE_END));
+	}
+
+	@Test
+	public void rangeIsHandedToSendfile() throws Exception {
+		byte[] content = randomContent(LARGE_FILE);
+		DBFile dbFile = store(content);
+
+		HttpServletRequest request = mockMvc
+				.perform(get("/api/file/downloadFile/{fileId}", dbFile.getId()).requestAttr(SENDFILE_SUPPORT, true)
+						.header(HttpHeaders.RANGE, "bytes=1000-59999"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-59999/" + LARGE_FILE))
+				.andExpect(content().bytes(new byte[0])).andReturn().getRequest();
+
+		assertEquals(storedPath(dbFile), request.getAttribute(SENDFILE_FILENAME));
+		assertEquals(1000L, request.getAttribute(SENDFILE_START));
+		assertEquals(60000L, request.getAttribute(SENDFILE_END));
+	}
+
+	@Test
+	public void rangeIsWrittenWithoutSendfileSupport() throws Exception {
+		byte[] content = randomContent(LARGE_FILE);
+		DBFile dbFile = store(content);
+
+		mockMvc.perform(get("/api/file/downloadFile/{fileId}", dbFile.getId()).header(HttpHeaders.RANGE,
+				"bytes=1000-1999")).andExpect(status().isPartialContent())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-1999/" + LARGE_FILE))
+				.andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 1000))
+				.andExpect(content().bytes(Arrays.copyOfRange(content, 1000, 2000)));
+	}
+
+	@Test
+	public void rangeOfCompressedBlobIsInflated() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			text.append("line ").append(i).append('\n');
+		}
+		byte[] content = text.toString().getBytes(StandardCharsets.UTF_8);
+		DBFile dbFile = dbFileStorageService
+				.storeFile(new MockMultipartFile("file", "data.txt", "text/plain", content));
+
+		mockMvc.perform(get("/api/file/downloadFile/{fileId}", dbFile.getId()).header(HttpHeaders.RANGE,
+				"bytes=5000-5999")).andExpect(status().isPartialContent())
+				.andExpect(content().bytes(Arrays.copyOfRange(content, 5000, 6000)));
+	}
+
+	@Test
+	public void rangeStartingAtTheEndIsNotSatisfiable() throws Exception {
+		DBFile dbFile = store(randomContent(LARGE_FILE));
+
+		mockMvc.perform(get("/api/file/downloadFile/{fileId}", dbFile.getId()).header(HttpHeaders.RANGE,
+				"bytes=" + LARGE_FILE + "-")).andExpect(status().isRequestedRangeNotSatisfiable())
+				.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + LARGE_FILE));
+	}
+
+	@Test
+	public void bodyIsWrittenWithoutSendfileSupport() throws Exception {
+		byte[] content = randomContent(LARGE_FILE);
+		DBFile dbFile = store(content);
+
+		HttpServletRequest request = mockMvc.perform(get("/api/file/downloadFile/{fileId}", dbFile.getId()))
+				.andExpect(status().isOk()).andExpect(content().bytes(content)).andReturn().getRequest();
+
+		assertNull(request.getAttribute(SENDFILE_FILENAME));
+	}
+
+	@Test
+	public void smallFileIsWrittenDirectly() throws Exception {
+		byte[] content = randomContent(SMALL_FILE);
+		DBFile dbFile = store(content);
+
+		HttpServletRequest request = mockMvc
+				.perform(get("/api/file/downloadFile/{fileId}", dbFile.getId()).requestAttr(SENDFILE_SUPPORT, true))
+				.andExpect(status().isOk()).andExpect(content().bytes(content)).andReturn().getRequest();
+
+		assertNull(request.getAttribute(SENDFILE_FILENAME));
+	}
+
+	private DBFile store(byte[] content) {
+		// random bytes under a binary type are stored as is, not gzipped
+		return dbFileStorageService
+				.storeFile(new MockMultipartFile("file", "data.bin", "application/octet-stream", content));
+	}
+
+	private String storedPath(DBFile dbFile) {
+		return dbFileStorageService.getStoredPath(dbFileStorageService.getFileMetadata(dbFile.getId()))
+				.toAbsolutePath().toString();
+	}
+
+	private static byte[] randomContent(int size) {
+		byte[] content = new byte[size];
+		new Random().nextBytes(content);
+		return content;
+	}
+
+}
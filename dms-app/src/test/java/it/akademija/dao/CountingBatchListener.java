@@ -0,0 +1,33 @@
+package it.akademija.dao;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Session listener that counts how often a JDBC batch is sent, either because
+ * it is full or because it is flushed. Hibernate statistics only count prepared
+ * statements, and a batch statement is prepared once for all its rows. Batch
+ * observers can't be used for this, Hibernate clears them whenever it releases
+ * the batch before preparing the next statement.
+ */
+public class CountingBatchListener extends BaseSessionEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final AtomicInteger EXECUTIONS = new AtomicInteger();
+
+	public static int getExecutions() {
+		return EXECUTIONS.get();
+	}
+
+	public static void reset() {
+		EXECUTIONS.set(0);
+	}
+
+	@Override
+	public void jdbcExecuteBatchStart() {
+		EXECUTIONS.incrementAndGet();
+	}
+
+}
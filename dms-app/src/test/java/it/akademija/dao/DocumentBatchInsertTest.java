@@ -0,0 +1,130 @@
+package it.akademija.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import it.akademija.model.document.Document;
+import it.akademija.model.file.DBFile;
+
+/**
+ * Documents with their files go out in ordered JDBC batches of 50 and take
+ * their ids in blocks of 50 from document_seq. Every test starts on a new
+ * context with an empty database, so the id optimizer holds no block yet, the
+ * way it is when the application starts.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session.events.auto=it.akademija.dao.CountingBatchListener")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class DocumentBatchInsertTest {
+
+	private static final int DOCUMENTS = 60;
+	private static final int FILES_PER_DOCUMENT = 2;
+	private static final long ALLOCATION_SIZE = 50;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DocumentSequenceAlignment documentSequenceAlignment;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	public void resetCounters() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		CountingBatchListener.reset();
+	}
+
+	@Test
+	public void documentsAndFilesAreInsertedInBatches() {
+		long firstValue = nextDocumentSequenceValue();
+		statistics.clear();
+		CountingBatchListener.reset();
+
+		List<Long> ids = saveDocuments();
+
+		assertEquals(DOCUMENTS * (1 + FILES_PER_DOCUMENT), statistics.getEntityInsertCount());
+		// two document_seq calls, then one batch statement for documents and one for files,
+		// without order_inserts every switch between a document and its files starts a new one
+		assertEquals(2 + 2, statistics.getPrepareStatementCount());
+		// documents 50 + 10, files 50 + 50 + 20
+		assertEquals(2 + 3, CountingBatchListener.getExecutions());
+		assertEquals(2, (nextDocumentSequenceValue() - firstValue) / ALLOCATION_SIZE);
+		// pooled-lo hands out [value, value + 50) for each sequence value
+		assertEquals(expectedIds(firstValue), ids);
+	}
+
+	@Test
+	public void alignmentMovesTheSequencePastExistingDocuments() {
+		jdbcTemplate.update("INSERT INTO document (id, author, status) VALUES (1000, 'legacy', 'SUBMITTED')");
+
+		documentSequenceAlignment.alignDocumentSequence();
+		assertEquals(1001, nextDocumentSequenceValue());
+
+		List<Long> ids = saveDocuments();
+		assertEquals(expectedIds(1001), ids);
+
+		// already past every document, nothing to move
+		documentSequenceAlignment.alignDocumentSequence();
+		assertEquals(1101, nextDocumentSequenceValue());
+	}
+
+	private List<Long> saveDocuments() {
+		return transactionTemplate.execute(status -> {
+			List<Long> ids = new ArrayList<>();
+			for (int i = 0; i < DOCUMENTS; i++) {
+				Document document = new Document(null, "author", "type", "title " + i, "description " + i, null,
+						null, null, null, "SAVED");
+				for (int j = 0; j < FILES_PER_DOCUMENT; j++) {
+					document.addFile(new DBFile("file" + j + ".txt", "text/plain", String.format("%064d", j), 1L));
+				}
+				entityManager.persist(document);
+				ids.add(document.getId());
+			}
+			entityManager.flush();
+			return ids;
+		});
+	}
+
+	private long nextDocumentSequenceValue() {
+		return jdbcTemplate.queryForObject(
+				"SELECT CURRENT_VALUE + INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'DOCUMENT_SEQ'",
+				Long.class);
+	}
+
+	private static List<Long> expectedIds(long firstValue) {
+		return LongStream.range(firstValue, firstValue + DOCUMENTS).boxed().collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,78 @@
+package it.akademija.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The schema comes from the migrations alone. The test profile runs Hibernate
+ * with ddl-auto=validate, so the context only starts when the tables built by
+ * V1 to V4 match the entities.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase
+public class SchemaMigrationTest {
+
+	@Autowired
+	private Flyway flyway;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	public void allMigrationsAreApplied() {
+		List<String> applied = Arrays.stream(flyway.info().applied())
+				.map(migration -> migration.getVersion().getVersion()).collect(Collectors.toList());
+
+		assertEquals(Arrays.asList("1", "2", "3", "4"), applied);
+		assertEquals(0, flyway.info().pending().length);
+		for (MigrationInfo migration : flyway.info().applied()) {
+			assertTrue(migration.getState().isApplied(), migration.getScript());
+		}
+	}
+
+	@Test
+	public void documentIndexesExist() {
+		List<String> indexes = jdbcTemplate.queryForList(
+				"SELECT DISTINCT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME LIKE 'IDX_%' ORDER BY INDEX_NAME",
+				String.class);
+
+		assertEquals(Arrays.asList("IDX_DOCUMENT_AUTHOR_ID", "IDX_DOCUMENT_AUTHOR_STATUS_ID",
+				"IDX_DOCUMENT_DOC_TYPE_STATUS_ID", "IDX_DOCUMENT_DOC_TYPE_STATUS_SUBMISSION_DATE",
+				"IDX_FILES_CONTENT_HASH", "IDX_FILES_CREATE_DATE", "IDX_UPLOAD_SESSIONS_LAST_UPDATE"), indexes);
+	}
+
+	@Test
+	public void baseSchemaRunsAgainOnAnExistingSchema() {
+		// databases created by hbm2ddl are baselined, V1 then runs on tables that already exist
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try {
+			ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V1__base_schema.sql"));
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+}
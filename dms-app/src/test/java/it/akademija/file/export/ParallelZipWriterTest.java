@@ -0,0 +1,206 @@
+package it.akademija.file.export;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Archives are read back both as a stream, which relies on the data
+ * descriptors, and through the central directory. Chunks are kept small so
+ * every entry spans several of them.
+ */
+public class ParallelZipWriterTest {
+
+	private static final int CHUNK_SIZE = 1024;
+
+	@TempDir
+	Path tempDir;
+
+	private ExecutorService executor;
+
+	@BeforeEach
+	public void startExecutor() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterEach
+	public void stopExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void entriesOfKnownAndUnknownSizeAreReadBack() throws Exception {
+		Map<String, byte[]> expected = new LinkedHashMap<>();
+		expected.put("text.txt", text(5000));
+		expected.put("whole-chunks.txt", text(3 * CHUNK_SIZE));
+		expected.put("empty.txt", new byte[0]);
+		expected.put("stored.bin", random(2000));
+		expected.put("streamed.csv", text(10000));
+		expected.put("streamed-empty.csv", new byte[0]);
+
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		ParallelZipWriter writer = new ParallelZipWriter(archive, executor, CHUNK_SIZE, 3,
+				Deflater.DEFAULT_COMPRESSION);
+		for (String name : new String[] { "text.txt", "whole-chunks.txt", "empty.txt" }) {
+			byte[] content = expected.get(name);
+			writer.addEntry(name, content.length, true, () -> new ByteArrayInputStream(content));
+		}
+		byte[] stored = expected.get("stored.bin");
+		writer.addEntry("stored.bin", stored.length, false, () -> new ByteArrayInputStream(stored));
+		writeInPieces(writer.openEntry("streamed.csv"), expected.get("streamed.csv"));
+		writer.openEntry("streamed-empty.csv").close();
+		writer.finish();
+
+		assertEntries(expected, readStream(archive.toByteArray()));
+		assertEntries(expected, readCentralDirectory(archive.toByteArray()));
+	}
+
+	@Test
+	public void entriesAfterAStreamedEntryAreReadBack() throws Exception {
+		byte[] streamed = text(4000);
+		byte[] after = text(1500);
+
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		ParallelZipWriter writer = new ParallelZipWriter(archive, executor, CHUNK_SIZE, 2,
+				Deflater.DEFAULT_COMPRESSION);
+		writeInPieces(writer.openEntry("first.csv"), streamed);
+		writer.addEntry("second.txt", ParallelZipWriter.UNKNOWN_SIZE, true, () -> new ByteArrayInputStream(after));
+		writer.finish();
+
+		Map<String, byte[]> entries = readStream(archive.toByteArray());
+		assertArrayEquals(streamed, entries.get("first.csv"));
+		assertArrayEquals(after, entries.get("second.txt"));
+	}
+
+	@Test
+	public void progressFollowsTheOutput() throws Exception {
+		byte[] first = text(5000);
+		byte[] second = random(3000);
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		List<Long> outputAtReport = new ArrayList<>();
+		long[] written = new long[2];
+		ExportProgress progress = new ExportProgress() {
+			@Override
+			public void started(int totalEntries, long totalBytes) {
+			}
+
+			@Override
+			public void bytesWritten(long bytes) {
+				// every report comes after more of the archive reached the output
+				assertTrue(outputAtReport.isEmpty() || archive.size() > outputAtReport.get(outputAtReport.size() - 1));
+				outputAtReport.add((long) archive.size());
+				written[0] += bytes;
+			}
+
+			@Override
+			public void entryWritten() {
+				written[1]++;
+			}
+		};
+
+		ParallelZipWriter writer = new ParallelZipWriter(archive, executor, CHUNK_SIZE, 2,
+				Deflater.DEFAULT_COMPRESSION, progress);
+		writer.addEntry("first.txt", first.length, true, () -> new ByteArrayInputStream(first));
+		writer.addEntry("second.bin", second.length, false, () -> new ByteArrayInputStream(second));
+		writeInPieces(writer.openEntry("unsized.csv"), text(2000));
+		writer.finish();
+
+		// 5 deflated chunks and 3 stored ones, the entry of unknown size is not part of the total
+		assertEquals(8, outputAtReport.size());
+		assertEquals(first.length + second.length, written[0]);
+		assertEquals(3, written[1]);
+	}
+
+	private static void assertEntries(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+		for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			assertArrayEquals(entry.getValue(), actual.get(entry.getKey()), entry.getKey());
+		}
+	}
+
+	// odd sized writes, so chunks are filled across several calls
+	private static void writeInPieces(OutputStream out, byte[] content) throws IOException {
+		int offset = 0;
+		for (int piece = 1; offset < content.length; piece = piece * 3 % 997 + 1) {
+			int length = Math.min(piece, content.length - offset);
+			out.write(content, offset, length);
+			offset += length;
+		}
+		out.close();
+	}
+
+	private static Map<String, byte[]> readStream(byte[] archive) throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive))) {
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				entries.put(entry.getName(), readAll(in));
+			}
+		}
+		return entries;
+	}
+
+	private Map<String, byte[]> readCentralDirectory(byte[] archive) throws IOException {
+		Path file = tempDir.resolve("archive.zip");
+		Files.write(file, archive);
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		try (ZipFile zipFile = new ZipFile(file.toFile())) {
+			for (ZipEntry entry : Collections.list(zipFile.entries())) {
+				assertNull(entries.put(entry.getName(), readAll(zipFile.getInputStream(entry))));
+			}
+		}
+		return entries;
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] text(int size) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; text.length() < size; i++) {
+			text.append("row ").append(i).append(";value ").append(i * 7).append('\n');
+		}
+		return text.substring(0, size).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] random(int size) {
+		byte[] content = new byte[size];
+		new Random(size).nextBytes(content);
+		return content;
+	}
+
+}
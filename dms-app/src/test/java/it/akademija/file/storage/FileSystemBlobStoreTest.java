@@ -0,0 +1,74 @@
+package it.akademija.file.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The sweeper deletes a blob only when it was neither stored again nor touched
+ * within the grace period.
+ */
+public class FileSystemBlobStoreTest {
+
+	private static final byte[] CONTENT = "some content".getBytes(StandardCharsets.UTF_8);
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	@TempDir
+	Path root;
+
+	private FileSystemBlobStore blobStore;
+
+	private String contentHash;
+
+	@BeforeEach
+	public void storeBlob() throws Exception {
+		blobStore = new FileSystemBlobStore(root.toString());
+		contentHash = blobStore.put(new ByteArrayInputStream(CONTENT), false).getContentHash();
+		Files.setLastModifiedTime(blobStore.getStoredPath(contentHash),
+				FileTime.fromMillis(System.currentTimeMillis() - 2 * HOUR));
+	}
+
+	@Test
+	public void blobUnusedSinceTheCutoffIsDeleted() {
+		assertEquals(CONTENT.length, blobStore.deleteIfUnusedSince(contentHash, System.currentTimeMillis() - HOUR));
+		assertFalse(blobStore.contains(contentHash));
+	}
+
+	@Test
+	public void touchedBlobIsKept() {
+		assertTrue(blobStore.touch(contentHash));
+
+		assertEquals(0, blobStore.deleteIfUnusedSince(contentHash, System.currentTimeMillis() - HOUR));
+		assertTrue(blobStore.contains(contentHash));
+	}
+
+	@Test
+	public void blobStoredAgainIsKept() {
+		blobStore.put(new ByteArrayInputStream(CONTENT), false);
+
+		assertEquals(0, blobStore.deleteIfUnusedSince(contentHash, System.currentTimeMillis() - HOUR));
+		assertTrue(blobStore.contains(contentHash));
+	}
+
+	@Test
+	public void blobStoredAfterTheSweepIsBack() {
+		blobStore.deleteIfUnusedSince(contentHash, System.currentTimeMillis() - HOUR);
+
+		assertFalse(blobStore.touch(contentHash));
+		blobStore.put(new ByteArrayInputStream(CONTENT), false);
+		assertTrue(blobStore.contains(contentHash));
+	}
+
+}
@@ -0,0 +1,67 @@
+package it.akademija.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import it.akademija.model.document.Document;
+
+/**
+ * A document is shown to its author, and to users who approve its type once it
+ * is submitted. Documents without an author are refused like any other
+ * document of someone else.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase
+@Transactional
+public class DocumentAccessTest {
+
+	@Autowired
+	private DocumentService documentService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	public void authorSeesTheDraft() {
+		Long id = persist("author", "SAVED");
+
+		assertEquals(id, documentService.getDocumentForClientByIdAndUsername("author", id).getId());
+	}
+
+	@Test
+	public void otherUsersCannotSeeTheDraft() {
+		Long id = persist("author", "SAVED");
+
+		assertThrows(AccessDeniedException.class,
+				() -> documentService.getDocumentForClientByIdAndUsername("other", id));
+	}
+
+	@Test
+	public void documentWithoutAuthorIsRefused() {
+		Long id = persist(null, "SUBMITTED");
+
+		assertThrows(AccessDeniedException.class,
+				() -> documentService.getDocumentForClientByIdAndUsername("other", id));
+		assertThrows(AccessDeniedException.class, () -> documentService.getEditableDocument(id, "other"));
+	}
+
+	private Long persist(String author, String status) {
+		Document document = new Document(null, author, "type", "title", "description", null, null, null, null,
+				status);
+		entityManager.persist(document);
+		entityManager.flush();
+		return document.getId();
+	}
+
+}
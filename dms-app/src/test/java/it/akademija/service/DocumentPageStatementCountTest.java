@@ -0,0 +1,125 @@
+package it.akademija.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import it.akademija.model.document.Document;
+import it.akademija.model.document.DocumentForTable;
+import it.akademija.model.file.DBFile;
+import it.akademija.model.page.PageForClient;
+
+/**
+ * A document page costs one query for the documents and one for the files of
+ * all of them, however many documents are on the page. A single document is
+ * fetched together with its files.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase
+@Transactional
+public class DocumentPageStatementCountTest {
+
+	private static final String AUTHOR = "author";
+	private static final String DOC_TYPE = "type";
+	private static final int DOCUMENTS = 40;
+	private static final int FILES_PER_DOCUMENT = 2;
+	private static final int PAGE_SIZE = 30;
+
+	@Autowired
+	private DocumentService documentService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	private Long lastId;
+
+	@BeforeEach
+	public void createDocuments() {
+		for (int i = 0; i < DOCUMENTS; i++) {
+			Document document = new Document(null, AUTHOR, DOC_TYPE, "title " + i, "description " + i, null, null,
+					null, null, "SUBMITTED");
+			for (int j = 0; j < FILES_PER_DOCUMENT; j++) {
+				document.addFile(new DBFile("file" + j + ".txt", "text/plain", String.format("%064d", j), 1L));
+			}
+			entityManager.persist(document);
+			lastId = document.getId();
+		}
+		entityManager.flush();
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	public void authorPagesTakeTwoStatements() {
+		assertStatementsPerPage(size -> documentService.getPageableDocumentsForClientByAuthor(AUTHOR, 0, size, null,
+				false));
+	}
+
+	@Test
+	public void authorKeysetPagesTakeTwoStatements() {
+		Long afterId = lastId + 1;
+		assertStatementsPerPage(size -> documentService.getPageableDocumentsForClientByAuthor(AUTHOR, 0, size,
+				afterId, false));
+	}
+
+	@Test
+	public void approvalPagesTakeTwoStatements() {
+		List<String> docTypes = Collections.singletonList(DOC_TYPE);
+		assertStatementsPerPage(size -> documentService.getPageableDocumentsForApprovalByDfaList(docTypes, "SAVED",
+				0, size, null, false));
+	}
+
+	@Test
+	public void singleDocumentComesWithItsFilesInOneStatement() {
+		assertEquals(1, countStatements(() -> {
+			assertEquals(FILES_PER_DOCUMENT,
+					documentService.getDocumentForClientByIdAndUsername(AUTHOR, lastId).getDbFileIDs().size());
+			return null;
+		}));
+	}
+
+	private void assertStatementsPerPage(PageLoader pageLoader) {
+		assertEquals(2, countStatements(() -> assertFiles(pageLoader.load(1), 1)));
+		assertEquals(2, countStatements(() -> assertFiles(pageLoader.load(PAGE_SIZE), PAGE_SIZE)));
+	}
+
+	private long countStatements(Supplier<Object> work) {
+		entityManager.clear();
+		statistics.clear();
+		work.get();
+		return statistics.getPrepareStatementCount();
+	}
+
+	private static Object assertFiles(PageForClient<DocumentForTable> page, int size) {
+		assertEquals(size, page.getItems().size());
+		for (DocumentForTable document : page.getItems()) {
+			assertEquals(FILES_PER_DOCUMENT, document.getDbFileIDs().size());
+		}
+		return page;
+	}
+
+	private interface PageLoader {
+		PageForClient<DocumentForTable> load(int size);
+	}
+
+}
@@ -0,0 +1,151 @@
+package it.akademija.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import it.akademija.dao.DBFileRepository;
+import it.akademija.file.exceptions.UploadConflictException;
+import it.akademija.file.storage.BlobStore;
+import it.akademija.file.storage.StoredBlob;
+import it.akademija.model.document.Document;
+import it.akademija.model.document.NewDocument;
+import it.akademija.model.file.DBFile;
+import it.akademija.model.file.FileFingerprint;
+
+/**
+ * A document saved for later is changed or submitted by its author only, and
+ * the files added on the way come back with the ids their download links are
+ * built from, known files included.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase
+@Transactional
+public class DocumentSaveForLaterTest {
+
+	private static final String AUTHOR = "author";
+
+	private static final byte[] KNOWN_CONTENT = "already stored".getBytes(StandardCharsets.UTF_8);
+
+	@Autowired
+	private DocumentService documentService;
+
+	@Autowired
+	private DBFileRepository dbFileRepository;
+
+	@Autowired
+	private BlobStore blobStore;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	private Long documentId;
+
+	private String knownHash;
+
+	@BeforeEach
+	public void createDocument() throws Exception {
+		StoredBlob blob = blobStore.put(new ByteArrayInputStream(KNOWN_CONTENT), false);
+		knownHash = blob.getContentHash();
+		Document document = new Document(null, AUTHOR, "type", "title", "description", null, null, null, null,
+				"SAVED");
+		document.addFile(new DBFile("known.txt", "text/plain", knownHash, blob.getSize()));
+		entityManager.persist(document);
+		entityManager.flush();
+		documentId = document.getId();
+	}
+
+	@Test
+	public void savedFilesComeBackWithIds() {
+		List<DBFile> dbFiles = documentService.saveDocumentAfterSaveForLater(documentId, newDocument(), newFiles(),
+				knownFiles(), AUTHOR);
+
+		assertFilesOfDocument(dbFiles);
+	}
+
+	@Test
+	public void submittedFilesComeBackWithIds() {
+		List<DBFile> dbFiles = documentService.submitDocumentAfterSaveForLater(documentId, newDocument(), newFiles(),
+				knownFiles(), AUTHOR);
+
+		assertFilesOfDocument(dbFiles);
+		assertEquals("SUBMITTED", documentService.getDocument(documentId).getStatus());
+	}
+
+	@Test
+	public void knownContentIsMarkedAsUsed() throws Exception {
+		Files.setLastModifiedTime(blobStore.getStoredPath(knownHash), FileTime.fromMillis(0));
+
+		documentService.saveDocumentAfterSaveForLater(documentId, newDocument(), new MultipartFile[0], knownFiles(),
+				AUTHOR);
+
+		assertEquals(0, blobStore.deleteIfUnusedSince(knownHash, System.currentTimeMillis() - 60000));
+	}
+
+	@Test
+	public void otherUsersCannotChangeTheDocument() {
+		assertThrows(AccessDeniedException.class, () -> documentService.saveDocumentAfterSaveForLater(documentId,
+				newDocument(), newFiles(), Collections.emptyList(), "intruder"));
+		assertThrows(AccessDeniedException.class, () -> documentService.submitDocumentAfterSaveForLater(documentId,
+				newDocument(), newFiles(), Collections.emptyList(), "intruder"));
+	}
+
+	@Test
+	public void submittedDocumentCannotBeChangedAgain() {
+		documentService.submitDocumentAfterSaveForLater(documentId, newDocument(), new MultipartFile[0],
+				Collections.emptyList(), AUTHOR);
+
+		assertThrows(UploadConflictException.class, () -> documentService.saveDocumentAfterSaveForLater(documentId,
+				newDocument(), newFiles(), Collections.emptyList(), AUTHOR));
+	}
+
+	private void assertFilesOfDocument(List<DBFile> dbFiles) {
+		assertEquals(2, dbFiles.size());
+		entityManager.flush();
+		Set<String> stored = dbFileRepository.findByDocumentId(documentId).stream().map(DBFile::getId)
+				.collect(Collectors.toSet());
+		for (DBFile dbFile : dbFiles) {
+			assertNotNull(dbFile.getId());
+			assertEquals(true, stored.contains(dbFile.getId()), dbFile.getFileName());
+		}
+		assertEquals(3, stored.size());
+	}
+
+	private static NewDocument newDocument() {
+		return new NewDocument(AUTHOR, "type", "new title", "new description");
+	}
+
+	private static MultipartFile[] newFiles() {
+		return new MultipartFile[] {
+				new MockMultipartFile("files", "new.txt", "text/plain", "new content".getBytes(StandardCharsets.UTF_8)) };
+	}
+
+	private List<FileFingerprint> knownFiles() {
+		return Collections.singletonList(
+				new FileFingerprint(knownHash, (long) KNOWN_CONTENT.length, "copy.txt", "text/plain"));
+	}
+
+}
@@ -0,0 +1,174 @@
+package it.akademija.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import it.akademija.model.doctype.DocType;
+import it.akademija.model.document.Document;
+import it.akademija.model.group.Group;
+import it.akademija.model.role.Role;
+import it.akademija.model.user.User;
+
+/**
+ * Single users, groups, roles, doc types and documents are looked up by key.
+ * Every table holds more rows than the one asked for, so a lookup that loads
+ * the whole table and filters it in memory shows up in the entity load count.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase
+@Transactional
+public class LookupQueryCountTest {
+
+	private static final int ROWS = 5;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private GroupService groupService;
+
+	@Autowired
+	private RoleService roleService;
+
+	@Autowired
+	private DocTypeService docTypeService;
+
+	@Autowired
+	private DocumentService documentService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	private Long documentId;
+
+	@BeforeEach
+	public void createRows() {
+		for (int i = 0; i < ROWS; i++) {
+			DocType docType = new DocType("type" + i);
+			docType.setComment("doc type " + i);
+			entityManager.persist(docType);
+
+			entityManager.persist(new Role("role" + i, "role " + i));
+
+			Group group = new Group("group" + i, "group " + i);
+			group.setDocTypesForCreation(new ArrayList<>(Collections.singletonList(docType)));
+			group.setDocTypesForApproval(new ArrayList<>());
+			entityManager.persist(group);
+
+			User user = new User("secret", "user" + i, "First" + i, "Last" + i, "user " + i, null, false);
+			user.setGroups(new ArrayList<>(Collections.singletonList(group)));
+			user.setRoles(new ArrayList<>(Arrays.asList(entityManager.find(Role.class, "role" + i))));
+			entityManager.persist(user);
+
+			Document document = new Document(null, "user" + i, "type" + i, "title " + i, "description " + i, null,
+					null, null, null, "SAVED");
+			entityManager.persist(document);
+			documentId = document.getId();
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	public void getUserLoadsOneUser() {
+		assertEquals("user2", userService.getUser("user2").getUsername());
+
+		assertEquals(1, statistics.getQueryExecutionCount());
+		assertEquals(1, statistics.getEntityLoadCount());
+	}
+
+	@Test
+	public void getUserForClientLoadsOneUserAndItsGroups() {
+		assertEquals(Collections.singletonList("group2"), userService.getUserForClient("user2").getUserGroups());
+
+		assertEquals(1, statistics.getQueryExecutionCount());
+		assertEquals(1, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+		assertEquals(1, statistics.getEntityStatistics(Group.class.getName()).getLoadCount());
+	}
+
+	@Test
+	public void getGroupLoadsOneGroup() {
+		assertEquals("group3", groupService.getGroup("group3").getId());
+
+		assertEquals(1, statistics.getQueryExecutionCount());
+		assertEquals(1, statistics.getEntityLoadCount());
+	}
+
+	@Test
+	public void getGroupForClientLoadsOneGroupAndItsMembers() {
+		assertEquals(Collections.singletonList("user3"), groupService.getGroupForClient("group3").getGroupUsers());
+
+		assertEquals(1, statistics.getQueryExecutionCount());
+		assertEquals(1, statistics.getEntityStatistics(Group.class.getName()).getLoadCount());
+		assertEquals(1, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+		assertEquals(1, statistics.getEntityStatistics(DocType.class.getName()).getLoadCount());
+	}
+
+	@Test
+	public void getRoleLoadsOneRole() {
+		assertEquals("role1", roleService.getRole("role1").getId());
+
+		assertEquals(1, statistics.getQueryExecutionCount());
+		assertEquals(1, statistics.getEntityLoadCount());
+	}
+
+	@Test
+	public void getRoleForClientLoadsNoEntities() {
+		assertEquals("role 1", roleService.getRoleForClient("role1").getComment());
+
+		assertEquals(1, statistics.getQueryExecutionCount());
+		assertEquals(0, statistics.getEntityLoadCount());
+	}
+
+	@Test
+	public void getDocTypeForClientLoadsNoEntities() {
+		assertEquals("doc type 4", docTypeService.getDocTypeNameAndCommentForClient("type4").getComment());
+
+		assertEquals(1, statistics.getQueryExecutionCount());
+		assertEquals(0, statistics.getEntityLoadCount());
+	}
+
+	@Test
+	public void nameListsSelectOnlyTheNames() {
+		assertEquals(ROWS, userService.getAllUsernames().size());
+		assertEquals(ROWS, groupService.getAllGroupNames().size());
+		assertEquals(ROWS, docTypeService.getAllDocTypeNames().size());
+
+		assertEquals(3, statistics.getQueryExecutionCount());
+		assertEquals(0, statistics.getEntityLoadCount());
+	}
+
+	@Test
+	public void getDocumentLoadsOneDocument() {
+		assertEquals(documentId, documentService.getDocument(documentId).getId());
+
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertEquals(1, statistics.getEntityLoadCount());
+	}
+
+}
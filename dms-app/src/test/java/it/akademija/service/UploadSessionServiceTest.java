@@ -0,0 +1,121 @@
+package it.akademija.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
+
+import it.akademija.file.exceptions.InvalidUploadException;
+import it.akademija.file.storage.BlobStore;
+import it.akademija.file.storage.ContentHashes;
+import it.akademija.model.document.Document;
+import it.akademija.model.file.DBFile;
+import it.akademija.model.file.NewUploadSession;
+import it.akademija.model.file.UploadSession;
+
+/**
+ * Chunks go straight into the session file. A chunk only counts once its size
+ * and checksum match, a rejected one is overwritten when it is sent again.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase
+@Transactional
+public class UploadSessionServiceTest {
+
+	private static final String USER = "author";
+	private static final int CHUNK_SIZE = 4096;
+
+	@Autowired
+	private UploadSessionService uploadSessionService;
+
+	@Autowired
+	private BlobStore blobStore;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	private byte[] content;
+
+	private UploadSession session;
+
+	@BeforeEach
+	public void createSession() {
+		Document document = new Document(null, USER, "type", "title", "description", null, null, null, null,
+				"SAVED");
+		entityManager.persist(document);
+		entityManager.flush();
+
+		content = new byte[2 * CHUNK_SIZE + 1000];
+		new Random(content.length).nextBytes(content);
+		NewUploadSession newUploadSession = new NewUploadSession();
+		newUploadSession.setDocumentId(document.getId());
+		newUploadSession.setFileName("data.bin");
+		newUploadSession.setFileType("application/octet-stream");
+		newUploadSession.setTotalSize((long) content.length);
+		newUploadSession.setChunkSize(CHUNK_SIZE);
+		session = uploadSessionService.createSession(newUploadSession, USER);
+	}
+
+	@Test
+	public void rejectedChunkIsOverwrittenBySendingItAgain() throws Exception {
+		write(0, chunk(0));
+		byte[] corrupted = chunk(1);
+		corrupted[10]++;
+		assertThrows(InvalidUploadException.class, () -> uploadSessionService.writeChunk(session.getId(), 1,
+				checksum(chunk(1)), new ByteArrayInputStream(corrupted), USER));
+		assertEquals(CHUNK_SIZE, uploadSessionService.getSession(session.getId(), USER).getReceivedBytes());
+
+		write(1, chunk(1));
+		write(2, chunk(2));
+		// already stored, sending it again changes nothing
+		write(0, chunk(0));
+		DBFile dbFile = uploadSessionService.completeSession(session.getId(), USER);
+
+		assertEquals(ContentHashes.toHex(ContentHashes.newDigest().digest(content)), dbFile.getContentHash());
+		try (InputStream in = blobStore.get(dbFile.getContentHash())) {
+			assertArrayEquals(content, StreamUtils.copyToByteArray(in));
+		}
+	}
+
+	@Test
+	public void chunkOfTheWrongSizeIsRejected() {
+		byte[] longer = Arrays.copyOf(content, CHUNK_SIZE + 1);
+		byte[] shorter = Arrays.copyOf(content, CHUNK_SIZE - 1);
+
+		assertThrows(InvalidUploadException.class, () -> uploadSessionService.writeChunk(session.getId(), 0,
+				checksum(longer), new ByteArrayInputStream(longer), USER));
+		assertThrows(InvalidUploadException.class, () -> uploadSessionService.writeChunk(session.getId(), 0,
+				checksum(shorter), new ByteArrayInputStream(shorter), USER));
+		assertEquals(0, uploadSessionService.getSession(session.getId(), USER).getReceivedBytes());
+	}
+
+	private void write(int index, byte[] chunk) {
+		uploadSessionService.writeChunk(session.getId(), index, checksum(chunk), new ByteArrayInputStream(chunk),
+				USER);
+	}
+
+	private byte[] chunk(int index) {
+		return Arrays.copyOfRange(content, index * CHUNK_SIZE, Math.min(content.length, (index + 1) * CHUNK_SIZE));
+	}
+
+	private static String checksum(byte[] chunk) {
+		return ContentHashes.toHex(ContentHashes.newDigest().digest(chunk));
+	}
+
+}
@@ -0,0 +1,23 @@
+// Dates come from the server as ISO timestamps, they are shown in the
+// browser's time zone down to the minute
+const pad = number => (number < 10 ? "0" + number : "" + number);
+
+const formatDate = value => {
+  if (!value) {
+    return value;
+  }
+  const date = new Date(value);
+  return (
+    date.getFullYear() +
+    "-" +
+    pad(date.getMonth() + 1) +
+    "-" +
+    pad(date.getDate()) +
+    " " +
+    pad(date.getHours()) +
+    ":" +
+    pad(date.getMinutes())
+  );
+};
+
+export default formatDate;
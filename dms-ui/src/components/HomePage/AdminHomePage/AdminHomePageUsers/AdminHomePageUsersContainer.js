@@ -61,13 +61,10 @@ class AdminHomePageUsersContainer extends React.Component {
         }
       })
       .then(response => {
-        let totalUsers = 0;
-        if (response.data.length > 0) {
-          totalUsers = response.data[0].totalUsers;
-        }
+        let totalUsers = response.data.total;
         this.setState({
           pageCount: Math.ceil(totalUsers / this.state.perPage),
-          elements: response.data,
+          elements: response.data.items,
           isSearchElements: false
         });
       })
@@ -95,14 +92,11 @@ class AdminHomePageUsersContainer extends React.Component {
         }
       })
       .then(response => {
-        let totalUsers = 0;
-        if (response.data.length > 0) {
-          totalUsers = response.data[0].totalUsers;
-        }
+        let totalUsers = response.data.total;
 
         this.setState({
           pageCount: Math.ceil(totalUsers / this.state.perPage),
-          elements: response.data,
+          elements: response.data.items,
           isSearchElements: false
         });
       })
@@ -158,13 +152,10 @@ class AdminHomePageUsersContainer extends React.Component {
         }
       )
       .then(response => {
-        let totalUsers = 0;
-        if (response.data.length > 0) {
-          totalUsers = response.data[0].totalUsers;
-        }
+        let totalUsers = response.data.total;
         this.setState({
           pageCount: Math.ceil(totalUsers / this.state.perPage),
-          elements: response.data,
+          elements: response.data.items,
           offset: 0,
           isSearchElements: true
         });
@@ -3,6 +3,7 @@ import { withRouter } from "react-router-dom";
 import axios from "axios";
 import SubmittedDFAReviewComponent from "./SumbittedDFAReviewComponent";
 import serverUrl from "../../../../URL/ServerUrl";
+import formatDate from "../../../../DateFormat/formatDate";
 
 class SubmittedDFAReviewContainer extends React.Component {
   constructor(props) {
@@ -35,7 +36,7 @@ class SubmittedDFAReviewContainer extends React.Component {
         docType={this.state.document.docType}
         title={this.state.document.title}
         description={this.state.document.description}
-        submissionDate={this.state.document.submissionDate}
+        submissionDate={formatDate(this.state.document.submissionDate)}
         status={this.state.document.status}
         onHide={this.props.onHide}
         updateDocuments={this.props.updateDocuments}
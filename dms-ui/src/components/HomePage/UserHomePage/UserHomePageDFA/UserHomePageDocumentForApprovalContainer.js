@@ -4,6 +4,7 @@ import { withRouter } from "react-router-dom";
 import UserHomePageDocumentForApprovalComponent from "./UserHomePageDocumentForApprovalComponent";
 import qs from "qs";
 import serverUrl from "../../../URL/ServerUrl";
+import formatDate from "../../../DateFormat/formatDate";
 import ReactPaginate from "react-paginate";
 
 class UserHomePageDocumentContainer extends React.Component {
@@ -52,10 +53,8 @@ class UserHomePageDocumentContainer extends React.Component {
             })
             .then(response => {
               this.setState({
-                pageCount: Math.ceil(
-                  response.data[0].totalDocuments / this.state.perPage
-                ),
-                elements: response.data,
+                pageCount: Math.ceil(response.data.total / this.state.perPage),
+                elements: response.data.items,
                 pageClickInfo: "DOC"
               });
             });
@@ -95,14 +94,11 @@ class UserHomePageDocumentContainer extends React.Component {
         }
       })
       .then(response => {
-        let totalDocuments = 0;
-        if (response.data.length > 0) {
-          totalDocuments = response.data[0].totalDocuments;
-        }
+        let totalDocuments = response.data.total;
 
         this.setState({
           pageCount: Math.ceil(totalDocuments / this.state.perPage),
-          elements: response.data,
+          elements: response.data.items,
           pageClickInfo: "DOC"
         });
       })
@@ -126,14 +122,11 @@ class UserHomePageDocumentContainer extends React.Component {
             }
           })
           .then(response => {
-            let totalDocuments = 0;
-            if (response.data.length > 0) {
-              totalDocuments = response.data[0].totalDocuments;
-            }
+            let totalDocuments = response.data.total;
 
             this.setState({
               pageCount: Math.ceil(totalDocuments / this.state.perPage),
-              elements: response.data,
+              elements: response.data.items,
               pageClickInfo: "DOC"
             });
           })
@@ -158,13 +151,10 @@ class UserHomePageDocumentContainer extends React.Component {
         }
       })
       .then(response => {
-        let totalDocuments = 0;
-        if (response.data.length > 0) {
-          totalDocuments = response.data[0].totalDocuments;
-        }
+        let totalDocuments = response.data.total;
         this.setState({
           pageCount: Math.ceil(totalDocuments / this.state.perPage),
-          elements: response.data,
+          elements: response.data.items,
           pageClickInfo: "FILTER"
         });
       })
@@ -201,13 +191,10 @@ class UserHomePageDocumentContainer extends React.Component {
         }
       )
       .then(response => {
-        let totalDocuments = 0;
-        if (response.data.length > 0) {
-          totalDocuments = response.data[0].totalDocuments;
-        }
+        let totalDocuments = response.data.total;
         this.setState({
           pageCount: Math.ceil(totalDocuments / this.state.perPage),
-          elements: response.data,
+          elements: response.data.items,
           offset: 0,
           pageClickInfo: "SEARCH"
         });
@@ -280,8 +267,8 @@ class UserHomePageDocumentContainer extends React.Component {
         title={document.title}
         docType={document.docType}
         status={document.status}
-        submissionDate={document.submissionDate}
-        reviewDate={document.reviewDate}
+        submissionDate={formatDate(document.submissionDate)}
+        reviewDate={formatDate(document.reviewDate)}
         updateDocuments={this.getDocuments}
         userDocTypesForApproval={this.state.userDocTypesForApproval}
       />
@@ -3,6 +3,7 @@ import { withRouter } from "react-router-dom";
 import axios from "axios";
 import SavedDocReviewComponent from "./SavedDocReviewComponent";
 import serverUrl from "../../../../URL/ServerUrl";
+import formatDate from "../../../../DateFormat/formatDate";
 
 class SavedDocReviewContainer extends React.Component {
   constructor(props) {
@@ -39,8 +40,8 @@ class SavedDocReviewContainer extends React.Component {
         docType={this.state.document.docType}
         title={this.state.document.title}
         description={this.state.document.description}
-        submissionDate={this.state.document.submissionDate}
-        reviewDate={this.state.document.reviewDate}
+        submissionDate={formatDate(this.state.document.submissionDate)}
+        reviewDate={formatDate(this.state.document.reviewDate)}
         status={this.state.document.status}
         documentReceiver={this.state.document.documentReceiver}
         rejectionReason={this.state.document.rejectionReason}
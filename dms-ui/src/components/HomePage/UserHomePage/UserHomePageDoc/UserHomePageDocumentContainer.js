@@ -5,6 +5,7 @@ import UserHomePageDocumentComponent from "./UserHomePageDocumentcomponent";
 import NewDocumentFormComponent from "../../../NewDocumentForm/NewDocumentFormComponent";
 import { Modal } from "react-bootstrap";
 import serverUrl from "../../../URL/ServerUrl";
+import formatDate from "../../../DateFormat/formatDate";
 import ReactPaginate from "react-paginate";
 import { store } from "react-notifications-component";
 
@@ -42,13 +43,10 @@ class UserHomePageDocumentContainer extends React.Component {
           }
         })
         .then(response => {
-          let totalDocuments = 0;
-          if (response.data.length > 0) {
-            totalDocuments = response.data[0].totalDocuments;
-          }
+          let totalDocuments = response.data.total;
           this.setState({
             pageCount: Math.ceil(totalDocuments / this.state.perPage),
-            elements: response.data,
+            elements: response.data.items,
             pageClickInfo: "DOC"
           });
 
@@ -89,14 +87,11 @@ class UserHomePageDocumentContainer extends React.Component {
         }
       })
       .then(response => {
-        let totalDocuments = 0;
-        if (response.data.length > 0) {
-          totalDocuments = response.data[0].totalDocuments;
-        }
+        let totalDocuments = response.data.total;
 
         this.setState({
           pageCount: Math.ceil(totalDocuments / this.state.perPage),
-          elements: response.data,
+          elements: response.data.items,
           pageClickInfo: "DOC"
         });
       })
@@ -116,14 +111,11 @@ class UserHomePageDocumentContainer extends React.Component {
             }
           })
           .then(response => {
-            let totalDocuments = 0;
-            if (response.data.length > 0) {
-              totalDocuments = response.data[0].totalDocuments;
-            }
+            let totalDocuments = response.data.total;
 
             this.setState({
               pageCount: Math.ceil(totalDocuments / this.state.perPage),
-              elements: response.data,
+              elements: response.data.items,
               pageClickInfo: "DOC"
             });
           })
@@ -154,13 +146,10 @@ class UserHomePageDocumentContainer extends React.Component {
         }
       )
       .then(response => {
-        let totalDocuments = 0;
-        if (response.data.length > 0) {
-          totalDocuments = response.data[0].totalDocuments;
-        }
+        let totalDocuments = response.data.total;
         this.setState({
           pageCount: Math.ceil(totalDocuments / this.state.perPage),
-          elements: response.data,
+          elements: response.data.items,
           pageClickInfo: "FILTER"
         });
       })
@@ -265,13 +254,10 @@ class UserHomePageDocumentContainer extends React.Component {
         }
       )
       .then(response => {
-        let totalDocuments = 0;
-        if (response.data.length > 0) {
-          totalDocuments = response.data[0].totalDocuments;
-        }
+        let totalDocuments = response.data.total;
         this.setState({
           pageCount: Math.ceil(totalDocuments / this.state.perPage),
-          elements: response.data,
+          elements: response.data.items,
           offset: 0,
           pageClickInfo: "SEARCH"
         });
@@ -321,8 +307,8 @@ class UserHomePageDocumentContainer extends React.Component {
         title={document.title}
         docType={document.docType}
         status={document.status}
-        submissionDate={document.submissionDate}
-        reviewDate={document.reviewDate}
+        submissionDate={formatDate(document.submissionDate)}
+        reviewDate={formatDate(document.reviewDate)}
         updateDocuments={this.getDocuments}
         userDocTypes={this.state.userDocTypes}
       />